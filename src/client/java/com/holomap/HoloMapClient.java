@@ -1,13 +1,30 @@
 package com.holomap;
 
+import com.holomap.cache.RegionCache;
 import com.holomap.input.HoloMapKeybinds;
+import com.holomap.network.ServerScanClient;
+import com.holomap.render.BlockFaceCache;
+import com.holomap.render.MeshShaders;
 import com.holomap.render.MinimapRenderer3D;
+import com.holomap.render.TilePyramid;
+import com.holomap.scan.IncrementalScanner;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 
 public class HoloMapClient implements ClientModInitializer {
 	@Override
 	public void onInitializeClient() {
 		HoloMapKeybinds.register(); // if it triggers rescan, point it to BlockScanner3D
 		MinimapRenderer3D.registerHudRender();
+		IncrementalScanner.register();
+		BlockFaceCache.register();
+		MeshShaders.register();
+		TilePyramid.register();
+		ServerScanClient.register();
+		ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> RegionCache.get().open(client));
+		ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+			TilePyramid.get().release();
+			RegionCache.get().close();
+		});
 	}
 }
\ No newline at end of file
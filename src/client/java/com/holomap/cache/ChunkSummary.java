@@ -0,0 +1,235 @@
+package com.holomap.cache;
+
+import com.holomap.map.VoxelVolume;
+import com.holomap.network.ColumnCodec;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.registry.RegistryEntryLookup;
+
+/**
+ * The scanned cells of one chunk as they were in a {@link VoxelVolume}: a local palette, the
+ * cell palette indices and face masks over the Y range of that scan, and the top recorded cell
+ * of each column. Stamped with the chunk's heightmap hash at capture time.
+ */
+public final class ChunkSummary {
+    public static final int NO_HEIGHT = Integer.MIN_VALUE;
+
+    final int chunkX, chunkZ;
+    final int minY, sizeY;
+    final int heightmapHash;
+    private final List<BlockState> palette;
+    // (x * sizeY + y) * 16 + z, chunk-local x/z
+    private final int[] cells;
+    private final byte[] faceMasks;
+    private final int[] heights; // x * 16 + z
+
+    private ChunkSummary(int chunkX, int chunkZ, int minY, int sizeY, int heightmapHash,
+                         List<BlockState> palette, int[] cells, byte[] faceMasks, int[] heights) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.minY = minY;
+        this.sizeY = sizeY;
+        this.heightmapHash = heightmapHash;
+        this.palette = palette;
+        this.cells = cells;
+        this.faceMasks = faceMasks;
+        this.heights = heights;
+    }
+
+    /** Copies a chunk whose columns all lie inside the volume. */
+    static ChunkSummary capture(VoxelVolume volume, int chunkX, int chunkZ, int heightmapHash) {
+        int sizeY = volume.sizeY();
+        var palette = new ArrayList<BlockState>();
+        palette.add(null);
+        var lookup = new Reference2IntOpenHashMap<BlockState>();
+        int[] cells = new int[16 * sizeY * 16];
+        byte[] faceMasks = new byte[cells.length];
+        int[] heights = new int[16 * 16];
+
+        int baseX = (chunkX << 4) - volume.minX();
+        int baseZ = (chunkZ << 4) - volume.minZ();
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int height = NO_HEIGHT;
+                for (int y = 0; y < sizeY; y++) {
+                    BlockState state = volume.get(baseX + x, y, baseZ + z);
+                    if (state == null) continue;
+
+                    int id = paletteIndex(palette, lookup, state);
+                    int i = (x * sizeY + y) * 16 + z;
+                    cells[i] = id;
+                    faceMasks[i] = (byte) volume.faceMask(baseX + x, y, baseZ + z);
+                    if (!state.isAir()) height = volume.minY() + y;
+                }
+                heights[x * 16 + z] = height;
+            }
+        }
+        return new ChunkSummary(chunkX, chunkZ, volume.minY(), sizeY, heightmapHash, palette, cells, faceMasks,
+                heights);
+    }
+
+    /**
+     * Builds a summary from columns the server sent, keeping the other columns of {@code base}
+     * (the chunk's previous summary, or {@code null}). Covers the Y range of both.
+     */
+    static ChunkSummary fromColumns(ChunkSummary base, int chunkX, int chunkZ, List<ColumnCodec.Column> columns,
+                                    int heightmapHash) {
+        boolean[] replaced = new boolean[16 * 16];
+        int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for (ColumnCodec.Column column : columns) {
+            replaced[column.localX() * 16 + column.localZ()] = true;
+            if (column.states().length == 0) continue;
+            minY = Math.min(minY, column.topY() - column.states().length + 1);
+            maxY = Math.max(maxY, column.topY());
+        }
+        if (base != null && base.sizeY > 0) {
+            minY = Math.min(minY, base.minY);
+            maxY = Math.max(maxY, base.minY + base.sizeY - 1);
+        }
+        if (minY > maxY) { // nothing recorded
+            minY = 0;
+            maxY = -1;
+        }
+
+        int sizeY = maxY - minY + 1;
+        var palette = new ArrayList<BlockState>();
+        palette.add(null);
+        var lookup = new Reference2IntOpenHashMap<BlockState>();
+        int[] cells = new int[16 * sizeY * 16];
+        byte[] faceMasks = new byte[cells.length];
+        int[] heights = new int[16 * 16];
+        Arrays.fill(heights, NO_HEIGHT);
+
+        for (ColumnCodec.Column column : columns) {
+            int x = column.localX(), z = column.localZ();
+            for (int i = column.states().length - 1; i >= 0; i--) { // bottom up, so the last non-air is the top
+                BlockState state = column.states()[i];
+                if (state == null) continue;
+                int y = column.topY() - i;
+                int index = (x * sizeY + y - minY) * 16 + z;
+                cells[index] = paletteIndex(palette, lookup, state);
+                faceMasks[index] = column.faceMasks()[i];
+                if (!state.isAir()) heights[x * 16 + z] = y;
+            }
+        }
+        if (base != null) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    if (replaced[x * 16 + z]) continue;
+                    for (int y = 0; y < base.sizeY; y++) {
+                        int from = (x * base.sizeY + y) * 16 + z;
+                        if (base.cells[from] == 0) continue;
+                        BlockState state = base.palette.get(base.cells[from]);
+                        int index = (x * sizeY + base.minY + y - minY) * 16 + z;
+                        cells[index] = paletteIndex(palette, lookup, state);
+                        faceMasks[index] = base.faceMasks[from];
+                    }
+                    heights[x * 16 + z] = base.heights[x * 16 + z];
+                }
+            }
+        }
+        return new ChunkSummary(chunkX, chunkZ, minY, sizeY, heightmapHash, palette, cells, faceMasks, heights);
+    }
+
+    /** Writes the columns that lie inside the volume over their overlapping Y range. */
+    public void applyTo(VoxelVolume volume) {
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                applyColumn(volume, (chunkX << 4) + x, (chunkZ << 4) + z);
+            }
+        }
+    }
+
+    /** Writes one world column, if the volume contains it; cells outside this summary's Y range are cleared. */
+    public void applyColumn(VoxelVolume volume, int worldX, int worldZ) {
+        if (!volume.containsColumn(worldX, worldZ)) return;
+        int x = worldX - (chunkX << 4), z = worldZ - (chunkZ << 4);
+        int vx = worldX - volume.minX(), vz = worldZ - volume.minZ();
+
+        volume.clearColumn(vx, vz);
+        int from = Math.max(minY, volume.minY());
+        int to = Math.min(minY + sizeY, volume.minY() + volume.sizeY());
+        for (int worldY = from; worldY < to; worldY++) {
+            int i = (x * sizeY + worldY - minY) * 16 + z;
+            if (cells[i] == 0) continue;
+            volume.set(vx, worldY - volume.minY(), vz, palette.get(cells[i]), faceMasks[i]);
+        }
+    }
+
+    /** World Y of the topmost non-air cell in the column, or {@link #NO_HEIGHT}. */
+    public int height(int localX, int localZ) {
+        return heights[localX * 16 + localZ];
+    }
+
+    /** State of the topmost non-air cell in the column, or {@code null} if it has none. */
+    public BlockState topState(int localX, int localZ) {
+        int height = height(localX, localZ);
+        if (height == NO_HEIGHT) return null;
+        return palette.get(cells[(localX * sizeY + height - minY) * 16 + localZ]);
+    }
+
+    /** Whether every column's top cell lies within world Y {@code bottomY} (inclusive) to {@code topY}. */
+    boolean fitsHeight(int bottomY, int topY) {
+        for (int height : heights) {
+            if (height != NO_HEIGHT && (height < bottomY || height >= topY)) return false;
+        }
+        return true;
+    }
+
+    private static int paletteIndex(List<BlockState> palette, Reference2IntOpenHashMap<BlockState> lookup,
+                                    BlockState state) {
+        return lookup.computeIfAbsent(state, s -> {
+            palette.add(state);
+            return palette.size() - 1;
+        });
+    }
+
+    public int chunkX() { return chunkX; }
+    public int chunkZ() { return chunkZ; }
+
+    NbtCompound toNbt() {
+        var nbt = new NbtCompound();
+        nbt.putInt("MinY", minY);
+        nbt.putInt("SizeY", sizeY);
+        nbt.putInt("HeightmapHash", heightmapHash);
+        var states = new NbtList();
+        for (int i = 1; i < palette.size(); i++) {
+            states.add(NbtHelper.fromBlockState(palette.get(i)));
+        }
+        nbt.put("Palette", states);
+        nbt.putIntArray("Cells", cells);
+        nbt.putByteArray("FaceMasks", faceMasks);
+        nbt.putIntArray("Heights", heights);
+        return nbt;
+    }
+
+    static ChunkSummary fromNbt(int chunkX, int chunkZ, NbtCompound nbt, RegistryEntryLookup<Block> blocks) {
+        var states = nbt.getList("Palette", NbtElement.COMPOUND_TYPE);
+        var palette = new ArrayList<BlockState>(states.size() + 1);
+        palette.add(null);
+        for (int i = 0; i < states.size(); i++) {
+            palette.add(NbtHelper.toBlockState(blocks, states.getCompound(i)));
+        }
+
+        int sizeY = nbt.getInt("SizeY");
+        int[] cells = nbt.getIntArray("Cells");
+        byte[] faceMasks = nbt.getByteArray("FaceMasks");
+        int[] heights = nbt.getIntArray("Heights");
+        if (cells.length != 16 * sizeY * 16 || faceMasks.length != cells.length || heights.length != 256) {
+            return null;
+        }
+        for (int cell : cells) {
+            if (cell < 0 || cell >= palette.size()) return null;
+        }
+        return new ChunkSummary(chunkX, chunkZ, nbt.getInt("MinY"), sizeY, nbt.getInt("HeightmapHash"),
+                palette, cells, faceMasks, heights);
+    }
+}
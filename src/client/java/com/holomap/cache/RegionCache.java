@@ -0,0 +1,316 @@
+package com.holomap.cache;
+
+import com.holomap.HoloMapMod;
+import com.holomap.debug.HoloMapMetrics;
+import com.holomap.map.VoxelVolume;
+import com.holomap.network.ColumnCodec;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.SharedConstants;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+
+/**
+ * Scanned chunk summaries kept on disk between sessions, so explored terrain shows up as soon
+ * as the client joins and chunks outside the loaded area can still be drawn.
+ *
+ * Files live under {@code <game dir>/holomap/cache/<server>/<dimension>/r.<x>.<z>.hmr}, one
+ * {@link RegionFile} per 32x32 chunks. Reads are lazy and go through pending writes first;
+ * writes are queued and flushed on a single background thread every few seconds, or sooner
+ * when enough pile up. Each summary is stamped with a hash of the chunk's surface heightmap,
+ * and loaded chunks whose stamp did not change since they were last stored are not written
+ * again.
+ *
+ * Disk entries stand in for chunks the client has not loaded and never vouch for a
+ * chunk's current state: stamps only count what this session stored, so the first scan of a
+ * loaded chunk always replaces its entry, and an entry goes stale at most until its chunk is
+ * seen again (or the server sends its summary). Entries written by another game data version
+ * or summary format, or with blocks outside the world's height, are treated as missing.
+ * Region files are memory-mapped; at most {@link #MAX_OPEN_REGIONS} stay open, and closing the
+ * cache or opening it for another world closes them all and drops their mappings.
+ * Open between {@link #open} and {@link #close}; thread-safe.
+ */
+public final class RegionCache {
+    private static final RegionCache INSTANCE = new RegionCache();
+
+    private static final int FORMAT_VERSION = 2; // 2: face masks follow isSideInvisible
+    private static final int MAX_OPEN_REGIONS = 16;
+    private static final int FLUSH_THRESHOLD = 64;
+    private static final long FLUSH_INTERVAL_SECONDS = 5;
+
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "HoloMap Cache Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Held for a whole flush, so close() waits for one already running on the writer
+    private final Object flushLock = new Object();
+    private volatile BiConsumer<World, ChunkSummary> storeListener = (world, summary) -> {};
+    private Path root = null;
+    private final Map<RegistryKey<World>, Dimension> dimensions = new HashMap<>();
+    private final Map<Path, RegionFile> openRegions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, RegionFile> eldest) {
+            if (size() <= MAX_OPEN_REGIONS) return false;
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+
+    private RegionCache() {
+        writer.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    public static RegionCache get() {
+        return INSTANCE;
+    }
+
+    /** Points the cache at the directory of the server or save the client just joined. */
+    public synchronized void open(MinecraftClient client) {
+        closeRegions();
+        String key;
+        if (client.getServer() != null) {
+            key = "sp_" + client.getServer().getSaveProperties().getLevelName();
+        } else if (client.getCurrentServerEntry() != null) {
+            key = "mp_" + client.getCurrentServerEntry().address;
+        } else {
+            key = "unknown";
+        }
+        root = FabricLoader.getInstance().getGameDir().resolve("holomap").resolve("cache").resolve(sanitize(key));
+    }
+
+    /** Writes everything still pending and closes the region files. */
+    public void close() {
+        flush();
+        synchronized (this) {
+            closeRegions();
+            root = null;
+        }
+    }
+
+    /**
+     * Called with every summary {@link #store} queues, on the thread that stored it (the client
+     * thread or a scan worker).
+     */
+    public void setStoreListener(BiConsumer<World, ChunkSummary> listener) {
+        storeListener = listener;
+    }
+
+    /** Heightmap stamp stored with a chunk's summary. Client thread only. */
+    public static int stamp(WorldChunk chunk) {
+        return Arrays.hashCode(chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE).asLongArray());
+    }
+
+    /** Fills the columns of the volume inside one chunk from its cached summary, if there is one. */
+    public void fill(World world, VoxelVolume volume, int chunkX, int chunkZ) {
+        ChunkSummary summary = load(world, chunkX, chunkZ);
+        HoloMapMetrics.add(summary != null ? HoloMapMetrics.Counter.REGION_CACHE_HITS
+                : HoloMapMetrics.Counter.REGION_CACHE_MISSES, 1);
+        if (summary != null) summary.applyTo(volume);
+    }
+
+    /** Same as the stamped overload for a chunk the world has loaded. Client thread only. */
+    public void store(World world, VoxelVolume volume, int chunkX, int chunkZ, boolean force) {
+        WorldChunk chunk = world.getChunkManager().getWorldChunk(chunkX, chunkZ, false);
+        if (chunk != null) store(world, volume, chunkX, chunkZ, stamp(chunk), force);
+    }
+
+    /**
+     * Queues one scanned chunk, if it lies fully inside the volume. Unless {@code force}d, it is
+     * skipped when {@code stamp} matches what was stored last.
+     */
+    public void store(World world, VoxelVolume volume, int chunkX, int chunkZ, int stamp, boolean force) {
+        if (!volume.containsColumn(chunkX << 4, chunkZ << 4)
+                || !volume.containsColumn((chunkX << 4) + 15, (chunkZ << 4) + 15)) return;
+        queue(world, chunkX, chunkZ, stamp, force, () -> ChunkSummary.capture(volume, chunkX, chunkZ, stamp));
+    }
+
+    /**
+     * Queues a chunk from columns the server sent, for chunks outside the volume. A
+     * {@code delta} replaces just its columns of the chunk's current summary and is always
+     * stored; a full summary is skipped when {@code stamp} matches what was stored last.
+     */
+    public void store(World world, int chunkX, int chunkZ, List<ColumnCodec.Column> columns, int stamp,
+                      boolean delta) {
+        ChunkSummary base = delta ? load(world, chunkX, chunkZ) : null;
+        queue(world, chunkX, chunkZ, stamp, delta,
+                () -> ChunkSummary.fromColumns(base, chunkX, chunkZ, columns, stamp));
+    }
+
+    private void queue(World world, int chunkX, int chunkZ, int stamp, boolean force, Supplier<ChunkSummary> capture) {
+        boolean flushNow;
+        ChunkSummary summary;
+        synchronized (this) {
+            if (root == null) return;
+            Dimension dimension = dimension(world);
+            long key = ChunkPos.toLong(chunkX, chunkZ);
+            if (!force && dimension.stamps.containsKey(key) && dimension.stamps.get(key) == stamp) return;
+
+            summary = capture.get();
+            dimension.stamps.put(key, stamp);
+            dimension.pending.put(key, summary);
+            flushNow = dimension.pending.size() == FLUSH_THRESHOLD;
+        }
+        storeListener.accept(world, summary);
+        if (flushNow) writer.execute(this::flush);
+    }
+
+    /** Returns the cached summary of a chunk, or {@code null} if there is none or it is stale. */
+    public ChunkSummary load(World world, int chunkX, int chunkZ) {
+        RegionFile region;
+        synchronized (this) {
+            if (root == null) return null;
+            Dimension dimension = dimension(world);
+            long key = ChunkPos.toLong(chunkX, chunkZ);
+            ChunkSummary pending = dimension.pending.get(key);
+            if (pending != null) return pending;
+            region = region(dimension, chunkX, chunkZ, false);
+        }
+        if (region == null) return null;
+
+        try {
+            byte[] data = region.read(chunkX & 31, chunkZ & 31);
+            if (data == null) return null;
+            NbtCompound nbt = NbtIo.readCompressed(new ByteArrayInputStream(data), NbtSizeTracker.ofUnlimitedBytes());
+            if (nbt.getInt("DataVersion") != dataVersion() || nbt.getInt("Format") != FORMAT_VERSION) return null;
+
+            ChunkSummary summary = ChunkSummary.fromNbt(chunkX, chunkZ, nbt, Registries.BLOCK.getReadOnlyWrapper());
+            if (summary != null && !summary.fitsHeight(world.getBottomY(), world.getTopY())) {
+                return null; // e.g. written before a datapack changed the dimension's height
+            }
+            return summary;
+        } catch (IOException | RuntimeException e) {
+            HoloMapMod.LOGGER.warn("[HoloMap] Dropping unreadable cache entry for chunk {}, {}", chunkX, chunkZ, e);
+            return null;
+        }
+    }
+
+    /** Writes all pending summaries. Runs on the writer thread, or on the caller in {@link #close}. */
+    private void flush() {
+        synchronized (flushLock) {
+            writePending();
+        }
+    }
+
+    private void writePending() {
+        Map<Dimension, Long2ObjectOpenHashMap<ChunkSummary>> batch = new HashMap<>();
+        synchronized (this) {
+            for (Dimension dimension : dimensions.values()) {
+                if (dimension.pending.isEmpty()) continue;
+                batch.put(dimension, dimension.pending);
+                dimension.pending = new Long2ObjectOpenHashMap<>();
+            }
+        }
+        if (batch.isEmpty()) return;
+
+        int written = 0;
+        for (var entry : batch.entrySet()) {
+            Dimension dimension = entry.getKey();
+            for (ChunkSummary summary : entry.getValue().values()) {
+                try {
+                    NbtCompound nbt = summary.toNbt();
+                    nbt.putInt("DataVersion", dataVersion());
+                    nbt.putInt("Format", FORMAT_VERSION);
+                    var bytes = new ByteArrayOutputStream();
+                    NbtIo.writeCompressed(nbt, bytes);
+
+                    // Under the lock, so the region cannot be evicted and closed before the write
+                    synchronized (this) {
+                        RegionFile region = region(dimension, summary.chunkX, summary.chunkZ, true);
+                        if (region == null) continue;
+                        region.write(summary.chunkX & 31, summary.chunkZ & 31, bytes.toByteArray());
+                    }
+                    written++;
+                } catch (IOException | RuntimeException e) {
+                    HoloMapMod.LOGGER.warn("[HoloMap] Failed to cache chunk {}, {}", summary.chunkX, summary.chunkZ, e);
+                }
+            }
+        }
+        synchronized (this) {
+            for (RegionFile region : openRegions.values()) region.flush();
+        }
+        HoloMapMod.LOGGER.debug("[HoloMap] Cached {} chunk summaries", written);
+    }
+
+    private Dimension dimension(World world) {
+        return dimensions.computeIfAbsent(world.getRegistryKey(), key -> new Dimension(
+                root.resolve(sanitize(key.getValue().getNamespace() + "_" + key.getValue().getPath()))));
+    }
+
+    /** The open region file for a chunk; with {@code create} false, {@code null} if it doesn't exist yet. */
+    private RegionFile region(Dimension dimension, int chunkX, int chunkZ, boolean create) {
+        Path path = dimension.directory.resolve("r." + (chunkX >> RegionFile.REGION_SHIFT) + "."
+                + (chunkZ >> RegionFile.REGION_SHIFT) + ".hmr");
+        RegionFile region = openRegions.get(path);
+        if (region != null) return region;
+        if (!create && !Files.exists(path)) return null;
+
+        try {
+            Files.createDirectories(dimension.directory);
+            region = new RegionFile(path);
+            openRegions.put(path, region);
+            return region;
+        } catch (IOException e) {
+            HoloMapMod.LOGGER.warn("[HoloMap] Failed to open cache region {}", path, e);
+            return null;
+        }
+    }
+
+    private void closeRegions() {
+        openRegions.values().forEach(RegionCache::closeQuietly);
+        openRegions.clear();
+        dimensions.clear();
+    }
+
+    private static void closeQuietly(RegionFile region) {
+        try {
+            region.close();
+        } catch (IOException e) {
+            HoloMapMod.LOGGER.warn("[HoloMap] Failed to close cache region", e);
+        }
+    }
+
+    private static int dataVersion() {
+        return SharedConstants.getGameVersion().getSaveVersion().getId();
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static final class Dimension {
+        final Path directory;
+        final Long2IntOpenHashMap stamps = new Long2IntOpenHashMap();
+        Long2ObjectOpenHashMap<ChunkSummary> pending = new Long2ObjectOpenHashMap<>();
+
+        Dimension(Path directory) {
+            this.directory = directory;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.holomap.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped file holding the summaries of a 32x32 chunk region, laid out like a much
+ * smaller Anvil file: a 4 KiB header of 1024 entries (sector offset in the high 24 bits, sector
+ * count in the low 8) followed by 4 KiB sectors. Each stored chunk starts with its byte length.
+ *
+ * A rewrite that still fits its sectors goes in place; otherwise it is appended and the old
+ * sectors are abandoned (files are small enough that compaction is not worth it). The file
+ * grows in steps of {@link #GROW_SECTORS} so appends rarely need a remap.
+ *
+ * Header entries are checked against the mapped size before use; one pointing outside it (a
+ * truncated or corrupt file) is cleared when the file is opened, so that chunk reads as missing.
+ *
+ * A mapping stays alive until its buffer is garbage collected; Java offers no way to unmap it
+ * earlier. Growing the file replaces the mapping and {@link #close} drops it, so each file holds
+ * at most one reachable mapping while open and none after.
+ */
+final class RegionFile implements Closeable {
+    static final int REGION_SHIFT = 5; // 32x32 chunks
+    private static final int SECTOR_BYTES = 4096;
+    private static final int HEADER_SECTORS = 1;
+    private static final int GROW_SECTORS = 64;
+    private static final int MAX_SECTORS_PER_CHUNK = 255;
+
+    private final FileChannel channel;
+    private MappedByteBuffer map; // null once closed
+    private int usedSectors;
+
+    RegionFile(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), (long) (HEADER_SECTORS + GROW_SECTORS) * SECTOR_BYTES);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        usedSectors = HEADER_SECTORS;
+        for (int i = 0; i < 1024; i++) {
+            int entry = map.getInt(i * 4);
+            if (entry == 0) continue;
+            if (!isValid(entry)) {
+                map.putInt(i * 4, 0);
+                continue;
+            }
+            usedSectors = Math.max(usedSectors, (entry >>> 8) + (entry & 0xFF));
+        }
+    }
+
+    /** Returns the stored bytes of the chunk at region-local (x, z), or {@code null} (also once closed). */
+    synchronized byte[] read(int localX, int localZ) {
+        if (map == null) return null;
+        int entry = map.getInt(headerOffset(localX, localZ));
+        if (entry == 0 || !isValid(entry)) return null;
+
+        int start = (entry >>> 8) * SECTOR_BYTES;
+        int length = map.getInt(start);
+        if (length <= 0 || length > (entry & 0xFF) * SECTOR_BYTES - 4) return null; // torn write
+        byte[] data = new byte[length];
+        map.get(start + 4, data);
+        return data;
+    }
+
+    synchronized void write(int localX, int localZ, byte[] data) throws IOException {
+        int sectors = (data.length + 4 + SECTOR_BYTES - 1) / SECTOR_BYTES;
+        if (sectors > MAX_SECTORS_PER_CHUNK) throw new IOException("Chunk summary too large: " + data.length);
+        if (map == null) throw new IOException("Region file closed");
+
+        int header = headerOffset(localX, localZ);
+        int entry = map.getInt(header);
+        int offset;
+        if (entry != 0 && (entry & 0xFF) >= sectors) {
+            offset = entry >>> 8;
+        } else {
+            offset = usedSectors;
+            usedSectors += sectors;
+            ensureCapacity(usedSectors);
+        }
+
+        int start = offset * SECTOR_BYTES;
+        map.putInt(start, data.length);
+        map.put(start + 4, data);
+        map.putInt(header, offset << 8 | sectors);
+    }
+
+    synchronized void flush() {
+        if (map != null) map.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (map == null) return;
+        map.force();
+        map = null;
+        channel.close();
+    }
+
+    private void ensureCapacity(int sectors) throws IOException {
+        long needed = (long) sectors * SECTOR_BYTES;
+        if (needed <= map.capacity()) return;
+        map.force();
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, needed + (long) GROW_SECTORS * SECTOR_BYTES);
+    }
+
+    /** Whether an entry's sectors lie past the header and inside the mapped file. */
+    private boolean isValid(int entry) {
+        int offset = entry >>> 8;
+        int sectors = entry & 0xFF;
+        return offset >= HEADER_SECTORS && sectors > 0
+                && (long) (offset + sectors) * SECTOR_BYTES <= map.capacity();
+    }
+
+    private static int headerOffset(int localX, int localZ) {
+        return (localZ << REGION_SHIFT | localX) * 4;
+    }
+}
@@ -0,0 +1,76 @@
+package com.holomap.debug;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events for the scan, mesh and render paths, so a recording taken with
+ * {@code -XX:StartFlightRecording} or {@code jcmd JFR.start} shows them next to GC and thread
+ * activity. They are independent of {@link HoloMapMetrics}: when no recording is running,
+ * {@link Event#shouldCommit()} is false and creating and beginning an event compiles to almost
+ * nothing.
+ */
+public final class HoloMapEvents {
+    private HoloMapEvents() {}
+
+    @Name("holomap.Scan")
+    @Label("Full Scan")
+    @Category("HoloMap")
+    @StackTrace(false)
+    public static final class Scan extends Event {
+        @Label("Horizontal Radius")
+        public int radius;
+        @Label("Vertical Range")
+        public int verticalRange;
+        @Label("Cave Layer")
+        public boolean caveLayer;
+        @Label("Tiles")
+        public int tiles;
+        @Label("Capture Micros")
+        public long captureMicros;
+    }
+
+    @Name("holomap.ScanTile")
+    @Label("Scan Tile")
+    @Category("HoloMap")
+    @StackTrace(false)
+    public static final class ScanTile extends Event {
+        @Label("Columns")
+        public int columns;
+        @Label("Blocks Visited")
+        public long blocksVisited;
+        @Label("Block State Reads")
+        public long blockStateReads;
+    }
+
+    @Name("holomap.MeshBuild")
+    @Label("Section Mesh Build")
+    @Category("HoloMap")
+    @StackTrace(false)
+    public static final class MeshBuild extends Event {
+        @Label("Section")
+        public long section;
+        @Label("LOD Step")
+        public int lodStep;
+        @Label("Quads")
+        public int quads;
+        @Label("Vertices")
+        public int vertices;
+        @Label("Mesh Size")
+        @DataAmount
+        public int bytes;
+    }
+
+    @Name("holomap.Redraw")
+    @Label("Minimap Redraw")
+    @Category("HoloMap")
+    @StackTrace(false)
+    public static final class Redraw extends Event {
+        @Label("Sections Drawn")
+        public int sections;
+    }
+}
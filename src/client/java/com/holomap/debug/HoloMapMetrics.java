@@ -0,0 +1,75 @@
+package com.holomap.debug;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers for the scan, mesh and render paths, shown by {@link MetricsOverlay}.
+ *
+ * Nothing is recorded until {@link #setEnabled} turns it on. Callers check {@link #enabled()}
+ * before doing any work only needed for measuring (reading the clock, summing counts), and keep
+ * per-block counts in locals or per-thread objects that are added here once per tile, section
+ * or frame, so the hot loops never touch shared state. Thread-safe.
+ */
+public final class HoloMapMetrics {
+    public enum Counter {
+        BLOCKS_VISITED, BLOCK_STATE_READS,
+        MESH_QUADS, MESH_VERTICES,
+        UPLOADED_BYTES,
+        REGION_CACHE_HITS, REGION_CACHE_MISSES,
+        FRAMES, REDRAWS;
+
+        private final LongAdder total = new LongAdder();
+    }
+
+    public enum Timer {
+        SCAN, MESH_BUILD, REDRAW;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    private static volatile boolean enabled = false;
+
+    private HoloMapMetrics() {}
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    /** Turning recording on starts every counter and timer from zero. */
+    public static void setEnabled(boolean value) {
+        if (value && !enabled) reset();
+        enabled = value;
+    }
+
+    public static void add(Counter counter, long amount) {
+        if (enabled) counter.total.add(amount);
+    }
+
+    public static void record(Timer timer, long nanos) {
+        if (!enabled) return;
+        timer.count.increment();
+        timer.totalNanos.add(nanos);
+        timer.maxNanos.accumulate(nanos);
+    }
+
+    public static long total(Counter counter) { return counter.total.sum(); }
+    public static long count(Timer timer) { return timer.count.sum(); }
+    public static long totalNanos(Timer timer) { return timer.totalNanos.sum(); }
+
+    /** Longest time recorded since the previous call. */
+    public static long takeMaxNanos(Timer timer) {
+        return timer.maxNanos.getThenReset();
+    }
+
+    private static void reset() {
+        for (Counter counter : Counter.values()) counter.total.reset();
+        for (Timer timer : Timer.values()) {
+            timer.count.reset();
+            timer.totalNanos.reset();
+            timer.maxNanos.reset();
+        }
+    }
+}
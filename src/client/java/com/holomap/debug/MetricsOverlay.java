@@ -0,0 +1,137 @@
+package com.holomap.debug;
+
+import com.holomap.render.QualityGovernor;
+import com.holomap.render.SectionedMesh;
+import com.holomap.render.TilePyramid;
+import com.holomap.scan.ScanScheduler;
+import com.holomap.scan.SectionResultCache;
+import java.util.ArrayList;
+import java.util.List;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.DrawContext;
+
+/**
+ * Debug panel drawn next to the minimap with what the holomap cost over the last second: scan
+ * and mesh build times, blocks visited, vertex uploads per frame, queue depths and cache hit
+ * rates. Showing it turns {@link HoloMapMetrics} recording on; hiding it turns it off again.
+ * Render thread only.
+ */
+public final class MetricsOverlay {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final int PADDING = 3;
+    private static final int BACKGROUND = 0x90000000;
+    private static final int TEXT = 0xFFE0E0E0;
+
+    private static boolean visible = false;
+    private static long windowStart = 0;
+    private static final long[] counters = new long[HoloMapMetrics.Counter.values().length];
+    private static final long[] timerCounts = new long[HoloMapMetrics.Timer.values().length];
+    private static final long[] timerNanos = new long[HoloMapMetrics.Timer.values().length];
+    private static long sectionHits, sectionMisses;
+    private static List<String> rates = List.of("collecting...");
+
+    private MetricsOverlay() {}
+
+    public static void toggle() {
+        visible = !visible;
+        HoloMapMetrics.setEnabled(visible);
+        if (visible) {
+            windowStart = System.nanoTime();
+            sample(0);
+            rates = List.of("collecting...");
+        }
+    }
+
+    public static boolean isVisible() {
+        return visible;
+    }
+
+    /** Draws the panel with its bottom right corner at ({@code right}, {@code bottom}). */
+    public static void draw(DrawContext dc, int right, int bottom, SectionedMesh mesh) {
+        if (!visible) return;
+
+        long now = System.nanoTime();
+        if (now - windowStart >= WINDOW_NANOS) {
+            rates = sample(now - windowStart);
+            windowStart = now;
+        }
+
+        var lines = new ArrayList<>(rates);
+        var scheduler = ScanScheduler.get();
+        lines.add(String.format("queues: %d scans queued, %d running, %d mesh rebuilds",
+                scheduler.queueDepth(), scheduler.runningCount(), mesh.pendingRebuilds()));
+        lines.add(String.format("mesh: %d sections, %d drawn", mesh.sectionCount(), mesh.lastDrawnSections()));
+        lines.add("quality: " + QualityGovernor.get());
+        lines.add("top-down: " + TilePyramid.get().pageCount() + " tile pages");
+
+        var textRenderer = MinecraftClient.getInstance().textRenderer;
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, textRenderer.getWidth(line));
+        }
+        int height = lines.size() * (textRenderer.fontHeight + 1) - 1;
+        int x = right - width - 2 * PADDING, y = bottom - height - 2 * PADDING;
+        dc.fill(x, y, right, bottom, BACKGROUND);
+        for (int i = 0; i < lines.size(); i++) {
+            dc.drawTextWithShadow(textRenderer, lines.get(i), x + PADDING,
+                    y + PADDING + i * (textRenderer.fontHeight + 1), TEXT);
+        }
+    }
+
+    /** Lines for the window that just ended, {@code elapsed} long; starts the next window. */
+    private static List<String> sample(long elapsed) {
+        var counterDeltas = new long[counters.length];
+        for (var counter : HoloMapMetrics.Counter.values()) {
+            long total = HoloMapMetrics.total(counter);
+            counterDeltas[counter.ordinal()] = total - counters[counter.ordinal()];
+            counters[counter.ordinal()] = total;
+        }
+        var timers = new String[timerCounts.length];
+        for (var timer : HoloMapMetrics.Timer.values()) {
+            int i = timer.ordinal();
+            long count = HoloMapMetrics.count(timer), nanos = HoloMapMetrics.totalNanos(timer);
+            long countDelta = count - timerCounts[i], nanosDelta = nanos - timerNanos[i];
+            timerCounts[i] = count;
+            timerNanos[i] = nanos;
+            timers[i] = countDelta == 0 ? "idle" : String.format("%d, avg %.2f ms, max %.2f ms", countDelta,
+                    nanosDelta / 1e6 / countDelta, HoloMapMetrics.takeMaxNanos(timer) / 1e6);
+        }
+        var cache = SectionResultCache.get();
+        long hits = cache.hits(), misses = cache.misses();
+        long hitDelta = hits - sectionHits, missDelta = misses - sectionMisses;
+        sectionHits = hits;
+        sectionMisses = misses;
+        if (elapsed == 0) return List.of();
+
+        double seconds = elapsed / 1e9;
+        long frames = Math.max(1, counterDeltas[HoloMapMetrics.Counter.FRAMES.ordinal()]);
+        var lines = new ArrayList<String>();
+        lines.add("HoloMap (per second)");
+        lines.add("scans: " + timers[HoloMapMetrics.Timer.SCAN.ordinal()]);
+        lines.add(String.format("  %s blocks visited, %s state reads",
+                amount(counterDeltas[HoloMapMetrics.Counter.BLOCKS_VISITED.ordinal()] / seconds),
+                amount(counterDeltas[HoloMapMetrics.Counter.BLOCK_STATE_READS.ordinal()] / seconds)));
+        lines.add("mesh builds: " + timers[HoloMapMetrics.Timer.MESH_BUILD.ordinal()]);
+        lines.add(String.format("  %s quads, %s vertices",
+                amount(counterDeltas[HoloMapMetrics.Counter.MESH_QUADS.ordinal()] / seconds),
+                amount(counterDeltas[HoloMapMetrics.Counter.MESH_VERTICES.ordinal()] / seconds)));
+        lines.add("redraws: " + timers[HoloMapMetrics.Timer.REDRAW.ordinal()]);
+        lines.add(String.format("  %.0f frames, %.1f KB emitted/uploaded per frame",
+                counterDeltas[HoloMapMetrics.Counter.FRAMES.ordinal()] / seconds,
+                counterDeltas[HoloMapMetrics.Counter.UPLOADED_BYTES.ordinal()] / 1024.0 / frames));
+        lines.add(String.format("caches: section %s hit, region %s hit", rate(hitDelta, missDelta),
+                rate(counterDeltas[HoloMapMetrics.Counter.REGION_CACHE_HITS.ordinal()],
+                        counterDeltas[HoloMapMetrics.Counter.REGION_CACHE_MISSES.ordinal()])));
+        return lines;
+    }
+
+    private static String amount(double value) {
+        if (value >= 1e6) return String.format("%.1fM", value / 1e6);
+        if (value >= 1e3) return String.format("%.1fk", value / 1e3);
+        return String.format("%.0f", value);
+    }
+
+    private static String rate(long hits, long misses) {
+        return hits + misses == 0 ? "-" : String.format("%.0f%%", 100.0 * hits / (hits + misses));
+    }
+}
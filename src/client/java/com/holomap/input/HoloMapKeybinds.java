@@ -1,17 +1,29 @@
 package com.holomap.input;
 
+import com.holomap.debug.MetricsOverlay;
+import com.holomap.map.MinimapData3D;
+import com.holomap.render.BlockMeshBuilder3D;
 import com.holomap.render.MinimapRenderer3D;
+import com.holomap.render.QualityGovernor;
 import com.holomap.scan.BlockScanner3D;
+import com.holomap.scan.SurfaceResolver;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.option.KeyBinding;
 import net.minecraft.client.util.InputUtil;
+import net.minecraft.text.Text;
 import org.lwjgl.glfw.GLFW;
 
 public final class HoloMapKeybinds {
     private static KeyBinding toggleMinimap;
     private static KeyBinding rescanMinimap;
+    private static KeyBinding cycleMeshMode;
+    private static KeyBinding toggleDebugOverlay;
+    private static KeyBinding toggleTopDown;
+    private static KeyBinding cycleZoom;
+    private static KeyBinding cycleScanMode;
+    private static KeyBinding cycleLayer;
 
     private HoloMapKeybinds() {}
 
@@ -32,6 +44,54 @@ public final class HoloMapKeybinds {
                                 GLFW.GLFW_KEY_N,
                                 "key.categories.holomap"));
 
+        cycleMeshMode =
+                KeyBindingHelper.registerKeyBinding(
+                        new KeyBinding(
+                                "key.holomap.mesh_mode",
+                                InputUtil.Type.KEYSYM,
+                                GLFW.GLFW_KEY_G,
+                                "key.categories.holomap"));
+
+        toggleDebugOverlay =
+                KeyBindingHelper.registerKeyBinding(
+                        new KeyBinding(
+                                "key.holomap.debug_overlay",
+                                InputUtil.Type.KEYSYM,
+                                GLFW.GLFW_KEY_J,
+                                "key.categories.holomap"));
+
+        toggleTopDown =
+                KeyBindingHelper.registerKeyBinding(
+                        new KeyBinding(
+                                "key.holomap.top_down",
+                                InputUtil.Type.KEYSYM,
+                                GLFW.GLFW_KEY_V,
+                                "key.categories.holomap"));
+
+        cycleZoom =
+                KeyBindingHelper.registerKeyBinding(
+                        new KeyBinding(
+                                "key.holomap.zoom",
+                                InputUtil.Type.KEYSYM,
+                                GLFW.GLFW_KEY_Z,
+                                "key.categories.holomap"));
+
+        cycleScanMode =
+                KeyBindingHelper.registerKeyBinding(
+                        new KeyBinding(
+                                "key.holomap.scan_mode",
+                                InputUtil.Type.KEYSYM,
+                                GLFW.GLFW_KEY_K,
+                                "key.categories.holomap"));
+
+        cycleLayer =
+                KeyBindingHelper.registerKeyBinding(
+                        new KeyBinding(
+                                "key.holomap.layer",
+                                InputUtil.Type.KEYSYM,
+                                GLFW.GLFW_KEY_H,
+                                "key.categories.holomap"));
+
         ClientTickEvents.END_CLIENT_TICK.register(
                 client -> {
                     while (toggleMinimap.wasPressed()) {
@@ -40,7 +100,52 @@ public final class HoloMapKeybinds {
                     while (rescanMinimap.wasPressed()) {
                         var player = MinecraftClient.getInstance().player;
                         if (player != null) {
-                            BlockScanner3D.scanAroundPlayerAsync(player, 48, 64);
+                            var level = QualityGovernor.get().level();
+                            BlockScanner3D.scanAroundPlayerAsync(player, level.horizontalRadius(), level.verticalRange());
+                        }
+                    }
+                    while (cycleMeshMode.wasPressed()) {
+                        var modes = BlockMeshBuilder3D.MeshMode.values();
+                        var next = modes[(BlockMeshBuilder3D.mode().ordinal() + 1) % modes.length];
+                        BlockMeshBuilder3D.setMode(next);
+                        MinimapData3D.get().markMeshDirty(); // remesh the same scan for comparison
+                        if (client.player != null) {
+                            client.player.sendMessage(Text.literal("HoloMap mesh: " + next), true);
+                        }
+                    }
+                    while (toggleDebugOverlay.wasPressed()) {
+                        MetricsOverlay.toggle();
+                    }
+                    while (toggleTopDown.wasPressed()) {
+                        boolean topDown = MinimapRenderer3D.toggleTopDown();
+                        if (client.player != null) {
+                            client.player.sendMessage(Text.literal("HoloMap view: " + (topDown ? "top-down" : "3D")), true);
+                        }
+                    }
+                    while (cycleZoom.wasPressed()) {
+                        int span = MinimapRenderer3D.cycleTopDownZoom();
+                        if (client.player != null) {
+                            client.player.sendMessage(Text.literal("HoloMap top-down: " + span + " blocks"), true);
+                        }
+                    }
+                    while (cycleScanMode.wasPressed()) {
+                        var modes = BlockScanner3D.ScanMode.values();
+                        var next = modes[(BlockScanner3D.mode().ordinal() + 1) % modes.length];
+                        BlockScanner3D.setMode(next);
+                        if (client.player != null) {
+                            var level = QualityGovernor.get().level();
+                            BlockScanner3D.scanAroundPlayerAsync(client.player, level.horizontalRadius(), level.verticalRange());
+                            client.player.sendMessage(Text.literal("HoloMap scan: " + next), true);
+                        }
+                    }
+                    while (cycleLayer.wasPressed()) {
+                        var modes = SurfaceResolver.Mode.values();
+                        var next = modes[(SurfaceResolver.mode().ordinal() + 1) % modes.length];
+                        SurfaceResolver.setMode(next);
+                        if (client.player != null) {
+                            var level = QualityGovernor.get().level();
+                            BlockScanner3D.scanAroundPlayerAsync(client.player, level.horizontalRadius(), level.verticalRange());
+                            client.player.sendMessage(Text.literal("HoloMap layer: " + next), true);
                         }
                     }
                 });
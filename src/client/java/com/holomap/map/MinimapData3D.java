@@ -1,17 +1,23 @@
 package com.holomap.map;
 
-import com.holomap.scan.BlockScanner3D;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
 
 public final class MinimapData3D {
     private static final MinimapData3D INSTANCE = new MinimapData3D();
+    private static final long[] NO_REGIONS = new long[0];
 
     private BlockPos origin = BlockPos.ORIGIN;
     private int horizontalRadius = 32;
     private int verticalRange = 64;
-    private BlockScanner3D.Block3DData[][][] blocks = new BlockScanner3D.Block3DData[0][0][0];
+    private boolean caveLayer = false;
+    private boolean surfaceOnly = false; // built by a FLOOD scan: only blocks bordering open space
+    private VoxelVolume volume = null;
     private boolean ready = false;
     private boolean meshDirty = true;
+    // Mesh regions (world chunk sections, ChunkSectionPos-packed) changed since the last rebuild
+    private final LongOpenHashSet dirtyRegions = new LongOpenHashSet();
 
     private MinimapData3D() {}
 
@@ -19,31 +25,72 @@ public final class MinimapData3D {
         return INSTANCE;
     }
 
-    public synchronized void setScanResult(BlockPos origin, int hr, int vr,
-                                           BlockScanner3D.Block3DData[][][] blocks) {
+    public synchronized void setScanResult(BlockPos origin, int hr, int vr, boolean caveLayer,
+                                           boolean surfaceOnly, VoxelVolume volume) {
         this.origin = origin.toImmutable();
         this.horizontalRadius = hr;
         this.verticalRange = vr;
-        this.blocks = blocks;
+        this.caveLayer = caveLayer;
+        this.surfaceOnly = surfaceOnly;
+        this.volume = volume;
         this.ready = true;
         this.meshDirty = true;
+        this.dirtyRegions.clear();
     }
 
     public synchronized boolean isReady() {
-        return ready && blocks != null;
+        return ready && volume != null;
     }
 
     public synchronized BlockPos origin() { return origin; }
     public synchronized int horizontalRadius() { return horizontalRadius; }
     public synchronized int verticalRange() { return verticalRange; }
-    public synchronized BlockScanner3D.Block3DData[][][] blocks() { return blocks; }
+    public synchronized boolean caveLayer() { return caveLayer; }
+    public synchronized boolean surfaceOnly() { return surfaceOnly; }
+    public synchronized VoxelVolume volume() { return volume; }
+
+    /**
+     * Re-centres the scan window on a new column, keeping the Y range of the last full scan.
+     * Only columns that entered the window are cleared; see {@link VoxelVolume#shiftTo}.
+     */
+    public synchronized void slideTo(int centerX, int centerZ) {
+        if (volume == null) return;
+        volume.shiftTo(volume.minX() + centerX - origin.getX(), volume.minZ() + centerZ - origin.getZ());
+        origin = new BlockPos(centerX, origin.getY(), centerZ);
+    }
 
     public synchronized boolean isMeshDirty() { return meshDirty; }
-    public synchronized void markMeshClean() { meshDirty = false; }
+    /** Requests a full mesh rebuild of the current scan, e.g. after a mesh mode change. */
+    public synchronized void markMeshDirty() { meshDirty = true; }
+    public synchronized void markMeshClean() {
+        meshDirty = false;
+        dirtyRegions.clear();
+    }
+
+    /** Marks the mesh regions covering every volume cell of one world column as stale. */
+    public synchronized void markColumnDirty(int worldX, int worldZ) {
+        if (volume == null) return;
+        int sx = ChunkSectionPos.getSectionCoord(worldX);
+        int sz = ChunkSectionPos.getSectionCoord(worldZ);
+        int minSy = ChunkSectionPos.getSectionCoord(volume.minY());
+        int maxSy = ChunkSectionPos.getSectionCoord(volume.minY() + volume.sizeY() - 1);
+        for (int sy = minSy; sy <= maxSy; sy++) {
+            dirtyRegions.add(ChunkSectionPos.asLong(sx, sy, sz));
+        }
+    }
+
+    /** Returns and clears the regions marked by {@link #markColumnDirty}. */
+    public synchronized long[] drainDirtyRegions() {
+        if (dirtyRegions.isEmpty()) return NO_REGIONS;
+        long[] regions = dirtyRegions.toLongArray();
+        dirtyRegions.clear();
+        return regions;
+    }
 
     public synchronized void reset() {
         ready = false;
         meshDirty = true;
-        blocks = new BlockScanner3D.Block3DData[0][0][0];
+        volume = null;
+        dirtyRegions.clear();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,233 @@
+package com.holomap.map;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.Direction;
+
+/**
+ * Dense scan volume stored as primitive arrays instead of one object per cell.
+ *
+ * Each cell holds an index into a per-scan {@link BlockState} palette, bit-packed into a
+ * {@code long[]} (entries never straddle two longs), plus a 6-bit visible-face mask in a
+ * {@code byte[]}. Palette index 0 means "not recorded by the scan". Bit i of the face mask
+ * is set when the face with {@link Direction#getId()} i is visible.
+ *
+ * Footprint at hr = 32, vr = 32 (at most 16 cells per column are recorded, so up to 67,600 of
+ * them):
+ * - old Block3DData[65][32][65]: a Block3DData + BlockPos + boolean[6] per recorded cell
+ *   (72 B, ~4.9 MB) plus ~2,150 nested reference arrays (~0.6 MB), ~205,000 objects in total.
+ * - this class over 65 x 33 x 65 cells at 6 bits per entry (up to 64 distinct states):
+ *   13,943 longs (~112 KB) plus 139,425 face bytes (~136 KB), ~250 KB in 4 arrays plus the
+ *   palette.
+ *
+ * Horizontally the storage is a ring buffer: a world column always lives in the physical column
+ * {@code floorMod(worldX, sizeX), floorMod(worldZ, sizeZ)}, so {@link #shiftTo} can move the
+ * window by clearing only the newly exposed columns. Accessors take window-relative coordinates.
+ *
+ * A volume is filled by a single scan thread (parallel scans fill one tile volume per thread and
+ * merge them with {@link #copyFrom}); once handed to {@link MinimapData3D} it is only
+ * mutated on the client thread by incremental rescans and window shifts.
+ */
+public final class VoxelVolume {
+    public static final int EMPTY = 0;
+    private static final int MIN_BITS = 4;
+
+    private int minX, minZ;
+    private final int minY;
+    private final int sizeX, sizeY, sizeZ;
+    private int ringOffsetX, ringOffsetZ; // physical column of the window's first column
+
+    private final List<BlockState> palette = new ArrayList<>();
+    private final Reference2IntOpenHashMap<BlockState> paletteLookup = new Reference2IntOpenHashMap<>();
+    private final byte[] faceMasks;
+    private long[] indices;
+    private int bits;
+    private int valuesPerLong;
+    private long valueMask;
+
+    public VoxelVolume(int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.faceMasks = new byte[sizeX * sizeY * sizeZ];
+        this.palette.add(null); // EMPTY
+        this.paletteLookup.defaultReturnValue(-1);
+        this.ringOffsetX = Math.floorMod(minX, sizeX);
+        this.ringOffsetZ = Math.floorMod(minZ, sizeZ);
+        resize(MIN_BITS);
+    }
+
+    public int minX() { return minX; }
+    public int minY() { return minY; }
+    public int minZ() { return minZ; }
+    public int sizeX() { return sizeX; }
+    public int sizeY() { return sizeY; }
+    public int sizeZ() { return sizeZ; }
+
+    public int cellCount() {
+        return faceMasks.length;
+    }
+
+    public int paletteSize() {
+        return palette.size();
+    }
+
+    public BlockState paletteEntry(int paletteIndex) {
+        return palette.get(paletteIndex);
+    }
+
+    public void set(int x, int y, int z, BlockState state, int faceMask) {
+        int i = index(x, y, z);
+        writeIndex(i, state == null ? EMPTY : paletteIdFor(state));
+        faceMasks[i] = (byte) faceMask;
+    }
+
+    /** Forgets every cell of one column so it can be rescanned. */
+    public void clearColumn(int x, int z) {
+        for (int y = 0; y < sizeY; y++) {
+            int i = index(x, y, z);
+            writeIndex(i, EMPTY);
+            faceMasks[i] = 0;
+        }
+    }
+
+    /**
+     * Copies every recorded cell of {@code other}, a window over the same Y range that lies
+     * inside this one, e.g. a tile filled by another scan thread.
+     */
+    public void copyFrom(VoxelVolume other) {
+        if (other.minY != minY || other.sizeY != sizeY) {
+            throw new IllegalArgumentException("Volumes cover different Y ranges");
+        }
+        int[] remap = new int[other.palette.size()];
+        for (int id = 1; id < remap.length; id++) {
+            remap[id] = paletteIdFor(other.palette.get(id));
+        }
+
+        int offsetX = other.minX - minX, offsetZ = other.minZ - minZ;
+        for (int x = 0; x < other.sizeX; x++) {
+            for (int z = 0; z < other.sizeZ; z++) {
+                for (int y = 0; y < sizeY; y++) {
+                    int from = other.index(x, y, z);
+                    int id = other.readIndex(from);
+                    if (id == EMPTY) continue;
+
+                    int to = index(x + offsetX, y, z + offsetZ);
+                    writeIndex(to, remap[id]);
+                    faceMasks[to] = other.faceMasks[from];
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the window so it starts at (newMinX, newMinZ). Columns still inside the window keep
+     * their data; columns that just entered it are cleared and need scanning.
+     */
+    public void shiftTo(int newMinX, int newMinZ) {
+        int oldMinX = minX, oldMinZ = minZ;
+        minX = newMinX;
+        minZ = newMinZ;
+        ringOffsetX = Math.floorMod(newMinX, sizeX);
+        ringOffsetZ = Math.floorMod(newMinZ, sizeZ);
+
+        for (int x = 0; x < sizeX; x++) {
+            int worldX = newMinX + x;
+            boolean keptX = worldX >= oldMinX && worldX < oldMinX + sizeX;
+            for (int z = 0; z < sizeZ; z++) {
+                int worldZ = newMinZ + z;
+                if (keptX && worldZ >= oldMinZ && worldZ < oldMinZ + sizeZ) continue;
+                clearColumn(x, z);
+            }
+        }
+    }
+
+    public boolean containsColumn(int worldX, int worldZ) {
+        return worldX >= minX && worldX < minX + sizeX && worldZ >= minZ && worldZ < minZ + sizeZ;
+    }
+
+    public int paletteIndex(int x, int y, int z) {
+        return readIndex(index(x, y, z));
+    }
+
+    /** Returns the state stored at the cell, or {@code null} if the scan did not record it. */
+    public BlockState get(int x, int y, int z) {
+        return palette.get(readIndex(index(x, y, z)));
+    }
+
+    public boolean isEmpty(int x, int y, int z) {
+        return readIndex(index(x, y, z)) == EMPTY;
+    }
+
+    public int faceMask(int x, int y, int z) {
+        return faceMasks[index(x, y, z)];
+    }
+
+    public static boolean isFaceVisible(int faceMask, Direction face) {
+        return (faceMask & (1 << face.getId())) != 0;
+    }
+
+    /** Approximate heap bytes held by the cell arrays and palette references. */
+    public long footprintBytes() {
+        return 16L + (long) indices.length * Long.BYTES
+                + 16L + faceMasks.length
+                + (long) palette.size() * 2 * Integer.BYTES;
+    }
+
+    private int index(int x, int y, int z) {
+        int px = x + ringOffsetX;
+        if (px >= sizeX) px -= sizeX;
+        int pz = z + ringOffsetZ;
+        if (pz >= sizeZ) pz -= sizeZ;
+        return (px * sizeY + y) * sizeZ + pz;
+    }
+
+    private int paletteIdFor(BlockState state) {
+        int id = paletteLookup.getInt(state);
+        if (id >= 0) return id;
+
+        id = palette.size();
+        palette.add(state);
+        paletteLookup.put(state, id);
+        if (id >= (1 << bits)) {
+            resize(bits + 1);
+        }
+        return id;
+    }
+
+    private int readIndex(int i) {
+        int slot = i / valuesPerLong;
+        int shift = (i - slot * valuesPerLong) * bits;
+        return (int) ((indices[slot] >>> shift) & valueMask);
+    }
+
+    private void writeIndex(int i, int value) {
+        int slot = i / valuesPerLong;
+        int shift = (i - slot * valuesPerLong) * bits;
+        indices[slot] = (indices[slot] & ~(valueMask << shift)) | ((long) value << shift);
+    }
+
+    private void resize(int newBits) {
+        long[] old = indices;
+        int oldBits = bits;
+        int oldPerLong = valuesPerLong;
+
+        bits = newBits;
+        valuesPerLong = 64 / newBits;
+        valueMask = (1L << newBits) - 1;
+        indices = new long[(faceMasks.length + valuesPerLong - 1) / valuesPerLong];
+        if (old == null) return;
+
+        long oldMask = (1L << oldBits) - 1;
+        for (int i = 0; i < faceMasks.length; i++) {
+            int slot = i / oldPerLong;
+            int value = (int) ((old[slot] >>> ((i - slot * oldPerLong) * oldBits)) & oldMask);
+            if (value != EMPTY) writeIndex(i, value);
+        }
+    }
+}
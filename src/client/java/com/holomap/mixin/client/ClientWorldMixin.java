@@ -0,0 +1,20 @@
+package com.holomap.mixin.client;
+
+import com.holomap.scan.IncrementalScanner;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientWorld.class)
+public class ClientWorldMixin {
+	@Inject(at = @At("HEAD"), method = "updateListeners")
+	private void holomap$onBlockUpdate(BlockPos pos, BlockState oldState, BlockState newState, int flags,
+									   CallbackInfo info) {
+		// Every client-side block change (server updates and local prediction) ends up here
+		IncrementalScanner.onBlockChanged(pos);
+	}
+}
@@ -0,0 +1,111 @@
+package com.holomap.network;
+
+import com.holomap.HoloMapMod;
+import com.holomap.cache.RegionCache;
+import com.holomap.map.MinimapData3D;
+import com.holomap.map.VoxelVolume;
+import java.util.Arrays;
+import java.util.List;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Client side of server-assisted scanning. When the server runs the mod, asks it for the chunks
+ * within {@link ScanRequestPayload#MAX_RADIUS} that lie beyond the client's view distance, again
+ * whenever the scan window moved {@link #REREQUEST_DISTANCE} chunks or the view distance changed.
+ * That reaches well past the scan volume: columns inside it are written into the volume, and
+ * every chunk goes to the disk cache, which also feeds the top-down map. Chunks the client has
+ * loaded are always scanned locally. Client thread only.
+ */
+public final class ServerScanClient {
+    private static final int REREQUEST_DISTANCE = 2; // chunks
+
+    private static BlockPos requestedAt = null;
+    private static int requestedSkipRadius = -1;
+    private static long received, rejected, stale;
+
+    private ServerScanClient() {}
+
+    public static void register() {
+        ClientPlayNetworking.registerGlobalReceiver(SurfaceChunkPayload.ID,
+                (payload, context) -> apply(context.client(), payload));
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            requestedAt = null;
+            requestedSkipRadius = -1;
+        });
+        ClientTickEvents.END_CLIENT_TICK.register(ServerScanClient::requestIfMoved);
+    }
+
+    private static void requestIfMoved(MinecraftClient client) {
+        var data = MinimapData3D.get();
+        if (client.player == null || !data.isReady() || !ClientPlayNetworking.canSend(ScanRequestPayload.ID)) return;
+
+        BlockPos origin = data.origin();
+        int skipRadius = client.options.getViewDistance().getValue();
+        if (requestedAt != null && skipRadius == requestedSkipRadius
+                && Math.abs((origin.getX() >> 4) - (requestedAt.getX() >> 4)) < REREQUEST_DISTANCE
+                && Math.abs((origin.getZ() >> 4) - (requestedAt.getZ() >> 4)) < REREQUEST_DISTANCE) {
+            return;
+        }
+        requestedAt = origin;
+        requestedSkipRadius = skipRadius;
+        ClientPlayNetworking.send(new ScanRequestPayload(ScanRequestPayload.MAX_RADIUS, skipRadius));
+    }
+
+    private static void apply(MinecraftClient client, SurfaceChunkPayload payload) {
+        ClientWorld world = client.world;
+        var data = MinimapData3D.get();
+        VoxelVolume volume = data.volume();
+        if (world == null) return;
+        if (!payload.world().equals(world.getRegistryKey())) {
+            stale++; // sent before a dimension change
+            return;
+        }
+        if (world.getChunkManager().isChunkLoaded(payload.chunkX(), payload.chunkZ())) return; // scanned locally
+
+        List<ColumnCodec.Column> columns;
+        try {
+            columns = ColumnCodec.decode(payload.data());
+        } catch (IllegalArgumentException e) {
+            rejected++;
+            HoloMapMod.LOGGER.warn("[HoloMap] Dropping malformed surface summary of chunk {}, {}",
+                    payload.chunkX(), payload.chunkZ(), e);
+            return;
+        }
+        received++;
+
+        int chunkX = payload.chunkX(), chunkZ = payload.chunkZ();
+        for (ColumnCodec.Column column : columns) {
+            int worldX = (chunkX << 4) + column.localX();
+            int worldZ = (chunkZ << 4) + column.localZ();
+            if (volume == null || !volume.containsColumn(worldX, worldZ)) continue;
+
+            int vx = worldX - volume.minX(), vz = worldZ - volume.minZ();
+            volume.clearColumn(vx, vz);
+            for (int i = 0; i < column.states().length; i++) {
+                int y = column.topY() - i - volume.minY();
+                if (column.states()[i] == null || y < 0 || y >= volume.sizeY()) continue;
+                volume.set(vx, y, vz, column.states()[i], column.faceMasks()[i]);
+            }
+            data.markColumnDirty(worldX, worldZ);
+        }
+
+        // Keep it for the next session and the top-down map; the payload hash stands in for the
+        // heightmap stamp. Chunks the volume does not fully hold are stored from the columns.
+        int stamp = Arrays.hashCode(payload.data());
+        if (volume != null && volume.containsColumn(chunkX << 4, chunkZ << 4)
+                && volume.containsColumn((chunkX << 4) + 15, (chunkZ << 4) + 15)) {
+            RegionCache.get().store(world, volume, chunkX, chunkZ, stamp, payload.delta());
+        } else {
+            RegionCache.get().store(world, chunkX, chunkZ, columns, stamp, payload.delta());
+        }
+    }
+
+    public static String stats() {
+        return String.format("%d summaries received, %d rejected, %d from another dimension", received, rejected, stale);
+    }
+}
@@ -0,0 +1,159 @@
+package com.holomap.render;
+
+import com.holomap.HoloMapMod;
+import com.holomap.map.MinimapData3D;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
+import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.FluidBlock;
+import net.minecraft.block.LeavesBlock;
+import net.minecraft.block.MapColor;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.RenderLayers;
+import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.registry.tag.FluidTags;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.random.Random;
+import net.minecraft.world.EmptyBlockView;
+
+/**
+ * Appearance per {@link BlockState} (face sprites from the baked model, plus the map colour used
+ * by LOD cells), resolved once and reused by every mesh build. Only a few hundred states show
+ * up in a scan, so after warm-up the mesh workers never touch the model manager: the render
+ * thread resolves the palette of each snapshot here and workers read plain {@link Appearance}
+ * values.
+ *
+ * Cleared on resource reload, which also remeshes the current scan. Render thread only.
+ */
+public final class BlockFaceCache {
+    /**
+     * UV bounds of the face sprite plus its tint ({@link #NO_TINT} for none), whether the face
+     * takes directional shading and the pass it draws in. Interned, so faces that look the same
+     * are the same instance and greedy meshing can compare them with {@code ==}.
+     */
+    record Face(Sprite sprite, float minU, float maxU, float minV, float maxV, int tint, boolean shade,
+                BlockMeshBuilder3D.Layer layer) {}
+
+    /** The six faces indexed by {@link Direction#getId()}, plus the map colour for LOD cells. */
+    record Appearance(Face[] faces, int mapColor) {}
+
+    /** {@link Appearance#mapColor} of states without one, e.g. glass. */
+    static final int NO_MAP_COLOR = -1;
+    /** {@link Face#tint} (RGB) of untinted faces. */
+    static final int NO_TINT = 0xFFFFFF;
+    // What BlockColors gives water in a plains biome; it has no default without a world
+    private static final int WATER_TINT = 0x3F76E4;
+
+    private static final Direction[] DIRECTIONS = {Direction.DOWN, Direction.UP, Direction.NORTH,
+            Direction.SOUTH, Direction.WEST, Direction.EAST};
+
+    private static final Map<BlockState, Appearance> APPEARANCES = new IdentityHashMap<>();
+    private static final Map<Face, Face> INTERNED = new HashMap<>();
+    // Fixed seed so random model variants resolve the same way every time
+    private static final Random RANDOM = Random.create(42L);
+
+    private BlockFaceCache() {}
+
+    public static void register() {
+        ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(
+                new SimpleSynchronousResourceReloadListener() {
+                    @Override
+                    public Identifier getFabricId() {
+                        return Identifier.of(HoloMapMod.MOD_ID, "block_face_cache");
+                    }
+
+                    @Override
+                    public void reload(ResourceManager manager) {
+                        clear();
+                        MinimapData3D.get().markMeshDirty();
+                    }
+                });
+    }
+
+    /** Appearance of the state, or {@code null} for a null state. */
+    static Appearance appearance(BlockState state) {
+        if (state == null) return null;
+        Appearance appearance = APPEARANCES.get(state);
+        if (appearance == null) {
+            appearance = resolve(state);
+            APPEARANCES.put(state, appearance);
+        }
+        return appearance;
+    }
+
+    public static void clear() {
+        APPEARANCES.clear();
+        INTERNED.clear();
+    }
+
+    public static int size() {
+        return APPEARANCES.size();
+    }
+
+    private static Appearance resolve(BlockState state) {
+        BakedModel model = MinecraftClient.getInstance().getBlockRenderManager().getModel(state);
+        BlockMeshBuilder3D.Layer layer = layer(state);
+        var faces = new Face[6];
+        for (Direction direction : DIRECTIONS) {
+            RANDOM.setSeed(42L);
+            var quads = model.getQuads(state, direction, RANDOM);
+
+            Face face;
+            if (!quads.isEmpty()) {
+                var quad = quads.get(0);
+                face = face(quad.getSprite(), tint(state, quad.getColorIndex()), quad.hasShade(), layer);
+            } else {
+                // Fallback to particle texture; fluids have no model quads, and water takes a tint
+                boolean water = state.getFluidState().isIn(FluidTags.WATER);
+                face = face(model.getParticleSprite(), water ? tint(state, 0) : NO_TINT, true, layer);
+            }
+            faces[direction.getId()] = face;
+        }
+
+        MapColor mapColor = state.getMapColor(EmptyBlockView.INSTANCE, BlockPos.ORIGIN);
+        return new Appearance(faces, mapColor == MapColor.CLEAR ? NO_MAP_COLOR : mapColor.color);
+    }
+
+    /**
+     * RGB colour for the tint index, or {@link #NO_TINT}. Faces are shared by every block of the
+     * state, so this is the colour BlockColors gives without a world (the default grass and
+     * foliage colours), not the biome's.
+     */
+    private static int tint(BlockState state, int tintIndex) {
+        if (tintIndex < 0) return NO_TINT;
+        int color = MinecraftClient.getInstance().getBlockColors().getColor(state, null, null, tintIndex);
+        if (color == -1) {
+            return state.getFluidState().isIn(FluidTags.WATER) ? WATER_TINT : NO_TINT;
+        }
+        return color & 0xFFFFFF;
+    }
+
+    /** The game's render layer for the state, except that leaves always count as cutout. */
+    private static BlockMeshBuilder3D.Layer layer(BlockState state) {
+        if (state.getBlock() instanceof LeavesBlock) return BlockMeshBuilder3D.Layer.CUTOUT;
+
+        RenderLayer layer = state.getBlock() instanceof FluidBlock
+                ? RenderLayers.getFluidLayer(state.getFluidState())
+                : RenderLayers.getBlockLayer(state);
+        if (layer == RenderLayer.getTranslucent()) return BlockMeshBuilder3D.Layer.TRANSLUCENT;
+        if (layer == RenderLayer.getCutout() || layer == RenderLayer.getCutoutMipped()) {
+            return BlockMeshBuilder3D.Layer.CUTOUT;
+        }
+        return BlockMeshBuilder3D.Layer.OPAQUE;
+    }
+
+    private static Face face(Sprite sprite, int tint, boolean shade, BlockMeshBuilder3D.Layer layer) {
+        var face = new Face(sprite, sprite.getMinU(), sprite.getMaxU(), sprite.getMinV(), sprite.getMaxV(),
+                tint, shade, layer);
+        return INTERNED.computeIfAbsent(face, f -> f);
+    }
+}
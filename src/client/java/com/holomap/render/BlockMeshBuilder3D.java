@@ -1,172 +1,576 @@
 package com.holomap.render;
 
-import com.holomap.map.MinimapData3D;
-import com.holomap.scan.BlockScanner3D;
-import net.minecraft.block.BlockState;
-import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.render.model.BakedModel;
-import net.minecraft.client.texture.Sprite;
-import net.minecraft.util.math.BlockPos;
+import com.holomap.map.VoxelVolume;
 import net.minecraft.util.math.Direction;
-import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
 
 public final class BlockMeshBuilder3D {
+    /**
+     * PER_FACE emits one quad per visible block face. GREEDY merges coplanar neighbours with the
+     * same face appearance (sprite, tint and shade; see {@link BlockFaceCache.Face}) into one
+     * quad per rectangle; the terrain shader repeats the sprite once per block across it.
+     */
+    public enum MeshMode { PER_FACE, GREEDY }
 
-    public static class BlockVertex {
-        public final float x, y, z;    // Position
-        public final float u, v;       // Texture coordinates
-        public final float r, g, b, a; // Color
+    /**
+     * Draw pass of a face. OPAQUE and CUTOUT draw unblended with depth writes (the shader
+     * discards the transparent texels of cutout sprites); TRANSLUCENT is blended, drawn last and
+     * sorted back to front.
+     */
+    public enum Layer { OPAQUE, CUTOUT, TRANSLUCENT }
 
-        public BlockVertex(float x, float y, float z, float u, float v, float r, float g, float b, float a) {
-            this.x = x; this.y = y; this.z = z;
-            this.u = u; this.v = v;
-            this.r = r; this.g = g; this.b = b; this.a = a;
+    private static final Direction[] DIRECTIONS = {Direction.DOWN, Direction.UP, Direction.NORTH,
+            Direction.SOUTH, Direction.WEST, Direction.EAST};
+
+    private static final int LOD_SOLID = 0x1000000; // marks a solid coarse cell above its RGB
+    private static final int LOD_FALLBACK_COLOR = 0x707070;
+
+    private static volatile MeshMode mode = MeshMode.PER_FACE;
+
+    /**
+     * A finished section mesh: four vertices per quad, no index list, packed into a direct
+     * buffer of {@link #VERTEX_BYTES} per vertex:
+     * - x, y, z as unsigned bytes in 1/8 blocks relative to the section origin, plus a pad byte
+     * - the sprite's min u, v as unsigned shorts normalized over the block atlas
+     * - colour as an ABGR int (R first in memory on little-endian, like the GL colour attribute)
+     * - the sprite's width and height in the atlas, normalized the same way
+     * - the vertex's place across the quad in blocks along the sprite's u and v, as unsigned
+     *   bytes, plus two pad bytes
+     *
+     * The shader wraps the last pair into the sprite, so a quad spanning several blocks repeats
+     * its texture per block. That is 80 bytes per quad, against roughly 360 for four BlockVertex
+     * objects, their list slots and six boxed indices. Quads are grouped by {@link Layer} and then face direction
+     * (see {@link #vertexCount(Layer, int)}) so the renderer can draw each pass separately and
+     * skip directions facing away from the camera, and the mesh records the bounds of its
+     * vertices for culling. The renderer uploads the groups as they are, in
+     * {@link MeshShaders#FORMAT}, and its shaders decode the layout on the GPU.
+     *
+     * LOD meshes ({@link #lodStep} above 1) are untextured: their sprite fields are zero and
+     * they are drawn with the lod shader; they are all OPAQUE.
+     *
+     * While building, vertices go into per-thread scratch buffers (one per group) that are
+     * reused across builds; {@link #finish} copies them into one exact-size buffer.
+     */
+    public static final class BlockMesh {
+        public static final int VERTEX_BYTES = 20;
+        private static final int GROUPS = 3 * 6; // layer * 6 + direction
+        private static final float POSITION_SCALE = 8f;
+        private static final float UV_SCALE = 65535f;
+        private static final ByteBuffer NO_VERTICES = allocate(0);
+        private static final ThreadLocal<ByteBuffer[]> SCRATCH = ThreadLocal.withInitial(() -> {
+            var buffers = new ByteBuffer[GROUPS];
+            for (int i = 0; i < GROUPS; i++) {
+                buffers[i] = allocate(64 * 4 * VERTEX_BYTES);
+            }
+            return buffers;
+        });
+
+        // World position of the region's min corner; vertices are relative to it
+        public final int originX, originY, originZ;
+        // Edge length of one mesh cell in blocks: 1 for full detail, 2 or 4 for LOD
+        public final int lodStep;
+        private ByteBuffer[] scratch;
+        private ByteBuffer buffer;
+        private final int[] groupStart = new int[GROUPS + 1]; // first vertex of each group, plus the end
+        private int vertexCount;
+        private int layer = Layer.OPAQUE.ordinal(); // of the vertices being added
+        private short spriteU, spriteV, spriteWidth, spriteHeight; // of the vertices being added
+        // Vertex bounds in blocks, relative to the origin; valid once finished and not empty
+        private float minX, minY, minZ, maxX, maxY, maxZ;
+
+        BlockMesh(int originX, int originY, int originZ, int lodStep) {
+            this(originX, originY, originZ, lodStep, SCRATCH.get());
+            for (ByteBuffer b : scratch) {
+                b.clear();
+            }
         }
-    }
 
-    public static class BlockMesh {
-        public final List<BlockVertex> vertices = new ArrayList<>();
-        public final List<Integer> indices = new ArrayList<>();
+        private BlockMesh(int originX, int originY, int originZ, int lodStep, ByteBuffer[] scratch) {
+            this.originX = originX;
+            this.originY = originY;
+            this.originZ = originZ;
+            this.lodStep = lodStep;
+            this.scratch = scratch;
+        }
 
-        public void addQuad(BlockVertex v1, BlockVertex v2, BlockVertex v3, BlockVertex v4) {
-            int base = vertices.size();
-            vertices.add(v1);
-            vertices.add(v2);
-            vertices.add(v3);
-            vertices.add(v4);
+        /** Sets the layer the following {@link #vertex} calls add to. */
+        void layer(Layer layer) {
+            this.layer = layer.ordinal();
+        }
 
-            // Two triangles forming a quad
-            indices.add(base); indices.add(base + 1); indices.add(base + 2);
-            indices.add(base); indices.add(base + 2); indices.add(base + 3);
+        /** Sets the atlas sprite the following {@link #vertex} calls repeat. */
+        void sprite(float minU, float minV, float maxU, float maxV) {
+            spriteU = (short) Math.round(minU * UV_SCALE);
+            spriteV = (short) Math.round(minV * UV_SCALE);
+            spriteWidth = (short) Math.round((maxU - minU) * UV_SCALE);
+            spriteHeight = (short) Math.round((maxV - minV) * UV_SCALE);
         }
-    }
 
-    public static BlockMesh buildMesh() {
-        var data = MinimapData3D.get();
-        if (!data.isReady()) return new BlockMesh();
+        /** Adds a vertex {@code s} blocks along the sprite's u and {@code t} along its v from the quad's corner. */
+        void vertex(Direction face, float x, float y, float z, int s, int t, int abgr) {
+            int group = layer * 6 + face.getId();
+            ByteBuffer out = scratch[group];
+            if (out.remaining() < VERTEX_BYTES) out = grow(group);
+            out.put((byte) Math.round(x * POSITION_SCALE));
+            out.put((byte) Math.round(y * POSITION_SCALE));
+            out.put((byte) Math.round(z * POSITION_SCALE));
+            out.put((byte) 0);
+            out.putShort(spriteU);
+            out.putShort(spriteV);
+            out.putInt(abgr);
+            out.putShort(spriteWidth);
+            out.putShort(spriteHeight);
+            out.put((byte) s);
+            out.put((byte) t);
+            out.putShort((short) 0);
+            vertexCount++;
+        }
 
-        BlockMesh mesh = new BlockMesh();
-        var blocks = data.blocks();
-        var origin = data.origin();
-        int hr = data.horizontalRadius();
-        int vr = data.verticalRange();
+        /** Moves the vertices out of the scratch buffers; the mesh is immutable afterwards. */
+        BlockMesh finish() {
+            ByteBuffer[] groups = scratch;
+            scratch = null;
+            if (vertexCount == 0) {
+                buffer = NO_VERTICES;
+                return this;
+            }
 
-        var client = MinecraftClient.getInstance();
+            buffer = allocate(vertexCount * VERTEX_BYTES);
+            for (int i = 0; i < GROUPS; i++) {
+                groupStart[i] = buffer.position() / VERTEX_BYTES;
+                buffer.put(groups[i].flip());
+            }
+            groupStart[GROUPS] = vertexCount;
+            buffer.flip();
+
+            minX = minY = minZ = Float.MAX_VALUE;
+            maxX = maxY = maxZ = -Float.MAX_VALUE;
+            for (int p = 0; p < buffer.limit(); p += VERTEX_BYTES) {
+                float x = (buffer.get(p) & 0xFF) / POSITION_SCALE;
+                float y = (buffer.get(p + 1) & 0xFF) / POSITION_SCALE;
+                float z = (buffer.get(p + 2) & 0xFF) / POSITION_SCALE;
+                minX = Math.min(minX, x); maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y); maxY = Math.max(maxY, y);
+                minZ = Math.min(minZ, z); maxZ = Math.max(maxZ, z);
+            }
+            return this;
+        }
+
+        /**
+         * A finished copy holding only the translucent quads, which is all a renderer that has
+         * uploaded the rest still needs for re-sorting. Origin and bounds stay those of the
+         * whole mesh.
+         */
+        public BlockMesh translucentPart() {
+            var part = new BlockMesh(originX, originY, originZ, lodStep, null);
+            int from = groupStart[Layer.TRANSLUCENT.ordinal() * 6];
+            int bytes = (vertexCount - from) * VERTEX_BYTES;
+            part.buffer = bytes == 0 ? NO_VERTICES
+                    : allocate(bytes).put(buffer.slice(from * VERTEX_BYTES, bytes)).flip();
+            for (int i = 0; i <= GROUPS; i++) {
+                part.groupStart[i] = Math.max(0, groupStart[i] - from);
+            }
+            part.vertexCount = vertexCount - from;
+            part.minX = minX; part.minY = minY; part.minZ = minZ;
+            part.maxX = maxX; part.maxY = maxY; part.maxZ = maxZ;
+            return part;
+        }
+
+        public boolean isEmpty() {
+            return vertexCount == 0;
+        }
 
-        for (int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                for (int z = 0; z < blocks[x][y].length; z++) {
-                    var blockData = blocks[x][y][z];
-                    if (blockData == null) continue;
+        public int vertexCount() {
+            return vertexCount;
+        }
 
-                    // World position (centered on origin)
-                    float worldX = x - hr;
-                    float worldY = y - vr/2f;
-                    float worldZ = z - hr;
+        /** Vertices of the layer facing the direction with {@link Direction#getId()} {@code faceId}. */
+        public int vertexCount(Layer layer, int faceId) {
+            int group = layer.ordinal() * 6 + faceId;
+            return groupStart[group + 1] - groupStart[group];
+        }
 
-                    addBlockToMesh(mesh, blockData, worldX, worldY, worldZ, client);
+        public boolean hasTranslucent() {
+            return groupStart[GROUPS] > groupStart[Layer.TRANSLUCENT.ordinal() * 6];
+        }
+
+        public int quadCount() {
+            return vertexCount / 4;
+        }
+
+        /** Off-heap bytes held by the vertex data. */
+        public int byteSize() {
+            return buffer.capacity();
+        }
+
+        public boolean isTextured() {
+            return lodStep == 1;
+        }
+
+        public float minX() { return minX; }
+        public float minY() { return minY; }
+        public float minZ() { return minZ; }
+        public float maxX() { return maxX; }
+        public float maxY() { return maxY; }
+        public float maxZ() { return maxZ; }
+
+        /** The packed vertices of one layer and face direction, as a view of the mesh's buffer. */
+        public ByteBuffer vertices(Layer layer, int faceId) {
+            int group = layer.ordinal() * 6 + faceId;
+            return buffer.slice(groupStart[group] * VERTEX_BYTES, vertexCount(layer, faceId) * VERTEX_BYTES);
+        }
+
+        /**
+         * Copies the translucent quads of the directions in {@code faceMask} into {@code out} at
+         * its position, farthest first along {@code (dirX, dirY, dirZ)}, which points from the
+         * scene towards the camera. {@code out} needs room for {@link #byteSize()} bytes.
+         * Returns the number of quads copied.
+         */
+        public int sortTranslucent(ByteBuffer out, int faceMask, float dirX, float dirY, float dirZ) {
+            int base = Layer.TRANSLUCENT.ordinal() * 6;
+            int quads = 0;
+            for (int face = 0; face < 6; face++) {
+                if ((faceMask & (1 << face)) != 0) quads += (groupStart[base + face + 1] - groupStart[base + face]) / 4;
+            }
+            if (quads == 0) return 0;
+
+            // Depth of the quad centre in the high half (sign-corrected float bits), first vertex below
+            long[] keys = new long[quads];
+            int n = 0;
+            for (int face = 0; face < 6; face++) {
+                if ((faceMask & (1 << face)) == 0) continue;
+                for (int i = groupStart[base + face]; i < groupStart[base + face + 1]; i += 4) {
+                    int sumX = 0, sumY = 0, sumZ = 0;
+                    for (int k = 0, p = i * VERTEX_BYTES; k < 4; k++, p += VERTEX_BYTES) {
+                        sumX += buffer.get(p) & 0xFF;
+                        sumY += buffer.get(p + 1) & 0xFF;
+                        sumZ += buffer.get(p + 2) & 0xFF;
+                    }
+                    int bits = Float.floatToIntBits(sumX * dirX + sumY * dirY + sumZ * dirZ);
+                    bits ^= (bits >> 31) & 0x7FFFFFFF;
+                    keys[n++] = (long) bits << 32 | i;
                 }
             }
+            Arrays.sort(keys);
+
+            int quadBytes = 4 * VERTEX_BYTES;
+            for (long key : keys) {
+                int first = (int) key;
+                out.put(out.position(), buffer, first * VERTEX_BYTES, quadBytes);
+                out.position(out.position() + quadBytes);
+            }
+            return quads;
+        }
+
+        private ByteBuffer grow(int group) {
+            ByteBuffer current = scratch[group];
+            ByteBuffer bigger = allocate(current.capacity() * 2).put(current.flip());
+            scratch[group] = bigger; // shared with SCRATCH, so the next build keeps the capacity
+            return bigger;
         }
 
-        return mesh;
+        private static ByteBuffer allocate(int bytes) {
+            return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
     }
 
-    private static void addBlockToMesh(BlockMesh mesh, BlockScanner3D.Block3DData blockData,
-                                       float x, float y, float z,
-                                       MinecraftClient client) {
-        BlockState state = blockData.state;
-        boolean[] visibleFaces = blockData.visibleFaces;
+    public static MeshMode mode() { return mode; }
+    public static void setMode(MeshMode newMode) { mode = newMode; }
 
-        BakedModel model = client.getBlockRenderManager().getModel(state);
+    /**
+     * Builds the mesh for one section snapshot. Vertices are relative to the section's min
+     * corner, so a mesh stays valid while the scan window slides; the renderer translates it
+     * against the current origin.
+     *
+     * Runs on a mesh worker thread. Returns {@code null} if {@code cancelled} turns true
+     * part-way through.
+     */
+    static BlockMesh buildSection(SectionSnapshot snapshot, BooleanSupplier cancelled) {
+        BlockMesh mesh = new BlockMesh(snapshot.originX, snapshot.originY, snapshot.originZ, snapshot.lodStep);
 
-        // Get texture for each face
-        Direction[] directions = {Direction.DOWN, Direction.UP, Direction.NORTH,
-                Direction.SOUTH, Direction.WEST, Direction.EAST};
+        if (snapshot.lodStep > 1) {
+            buildLod(mesh, snapshot, snapshot.lodStep);
+            return mesh.finish();
+        }
+        if (mode == MeshMode.GREEDY) {
+            return buildGreedy(mesh, snapshot, cancelled) ? mesh.finish() : null;
+        }
 
-        for (int i = 0; i < 6; i++) {
-            if (!visibleFaces[i]) continue; // Skip hidden faces
+        for (int x = 0; x < 16; x++) {
+            if (cancelled.getAsBoolean()) return null;
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    int i = (x * 16 + y) * 16 + z;
+                    int paletteIndex = snapshot.cells[i];
+                    if (paletteIndex == VoxelVolume.EMPTY) continue;
 
-            Direction face = directions[i];
-            Sprite sprite = getBlockFaceSprite(model, state, face);
+                    addBlockToMesh(mesh, snapshot.palette[paletteIndex].faces(), snapshot.faceMasks[i], x, y, z);
+                }
+            }
+        }
 
-            addBlockFace(mesh, x, y, z, face, sprite);
+        return mesh.finish();
+    }
+
+    /**
+     * LOD pass: collapses every step x step x step block of cells into one coloured cube. A cell
+     * is solid when at least half of its blocks are recorded with a map colour (so recorded air
+     * pockets stay empty); its colour is the average map colour of the
+     * topmost block of each column, which is what the minimap shows from above.
+     *
+     * Coarse cells only hide faces from neighbours inside the same section. Faces on the section
+     * border are always emitted and reach one step further down (down to the section floor) as a
+     * skirt, which covers the height mismatch and cracks against finer neighbouring tiers.
+     */
+    private static void buildLod(BlockMesh mesh, SectionSnapshot snapshot, int step) {
+        int n = 16 / step;
+        int[] colors = new int[n * n * n]; // RGB | SOLID, 0 for empty coarse cells
+        int half = step * step * step / 2;
+
+        for (int bx = 0; bx < n; bx++) {
+            for (int by = 0; by < n; by++) {
+                for (int bz = 0; bz < n; bz++) {
+                    int solid = 0, samples = 0, r = 0, g = 0, b = 0;
+                    for (int x = bx * step; x < (bx + 1) * step; x++) {
+                        for (int z = bz * step; z < (bz + 1) * step; z++) {
+                            boolean top = true;
+                            for (int y = (by + 1) * step - 1; y >= by * step; y--) {
+                                int paletteIndex = snapshot.cells[(x * 16 + y) * 16 + z];
+                                if (paletteIndex == VoxelVolume.EMPTY) continue;
+                                // Air the scanner keeps near the surface has no map colour, like glass
+                                int color = snapshot.palette[paletteIndex].mapColor();
+                                if (color == BlockFaceCache.NO_MAP_COLOR) continue;
+                                solid++;
+
+                                if (top) {
+                                    r += color >> 16 & 0xFF;
+                                    g += color >> 8 & 0xFF;
+                                    b += color & 0xFF;
+                                    samples++;
+                                    top = false;
+                                }
+                            }
+                        }
+                    }
+                    if (solid < half || solid == 0) continue;
+
+                    int color = samples == 0 ? LOD_FALLBACK_COLOR
+                            : (r / samples) << 16 | (g / samples) << 8 | (b / samples);
+                    colors[(bx * n + by) * n + bz] = LOD_SOLID | color;
+                }
+            }
+        }
+
+        for (int bx = 0; bx < n; bx++) {
+            for (int by = 0; by < n; by++) {
+                for (int bz = 0; bz < n; bz++) {
+                    int color = colors[(bx * n + by) * n + bz];
+                    if (color == 0) continue;
+
+                    for (Direction face : DIRECTIONS) {
+                        int nx = bx + face.getOffsetX(), ny = by + face.getOffsetY(), nz = bz + face.getOffsetZ();
+                        boolean border = nx < 0 || nx >= n || ny < 0 || ny >= n || nz < 0 || nz >= n;
+                        if (!border && colors[(nx * n + ny) * n + nz] != 0) continue;
+
+                        float y0 = by * step;
+                        if (border && face.getAxis() != Direction.Axis.Y) {
+                            y0 = Math.max(0, y0 - step); // skirt
+                        }
+                        addLodFace(mesh, face, bx * step, y0, bz * step,
+                                (bx + 1) * step, (by + 1) * step, (bz + 1) * step, color);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Adds one face of the box (x0, y0, z0)-(x1, y1, z1) in an RGB colour, shaded by direction. */
+    private static void addLodFace(BlockMesh mesh, Direction face, float x0, float y0, float z0,
+                                   float x1, float y1, float z1, int rgb) {
+        float light = getLightLevel(face);
+        int r = Math.round((rgb >> 16 & 0xFF) * light);
+        int g = Math.round((rgb >> 8 & 0xFF) * light);
+        int b = Math.round((rgb & 0xFF) * light);
+        int color = 0xFF000000 | b << 16 | g << 8 | r; // ABGR
+
+        // Same corner order as addFaceRect
+        switch (face) {
+            case UP -> {
+                mesh.vertex(face, x0, y1, z0, 0, 0, color);
+                mesh.vertex(face, x1, y1, z0, 0, 0, color);
+                mesh.vertex(face, x1, y1, z1, 0, 0, color);
+                mesh.vertex(face, x0, y1, z1, 0, 0, color);
+            }
+            case DOWN -> {
+                mesh.vertex(face, x0, y0, z1, 0, 0, color);
+                mesh.vertex(face, x1, y0, z1, 0, 0, color);
+                mesh.vertex(face, x1, y0, z0, 0, 0, color);
+                mesh.vertex(face, x0, y0, z0, 0, 0, color);
+            }
+            case NORTH -> {
+                mesh.vertex(face, x1, y0, z0, 0, 0, color);
+                mesh.vertex(face, x0, y0, z0, 0, 0, color);
+                mesh.vertex(face, x0, y1, z0, 0, 0, color);
+                mesh.vertex(face, x1, y1, z0, 0, 0, color);
+            }
+            case SOUTH -> {
+                mesh.vertex(face, x0, y0, z1, 0, 0, color);
+                mesh.vertex(face, x1, y0, z1, 0, 0, color);
+                mesh.vertex(face, x1, y1, z1, 0, 0, color);
+                mesh.vertex(face, x0, y1, z1, 0, 0, color);
+            }
+            case WEST -> {
+                mesh.vertex(face, x0, y0, z0, 0, 0, color);
+                mesh.vertex(face, x0, y0, z1, 0, 0, color);
+                mesh.vertex(face, x0, y1, z1, 0, 0, color);
+                mesh.vertex(face, x0, y1, z0, 0, 0, color);
+            }
+            case EAST -> {
+                mesh.vertex(face, x1, y0, z1, 0, 0, color);
+                mesh.vertex(face, x1, y0, z0, 0, 0, color);
+                mesh.vertex(face, x1, y1, z0, 0, 0, color);
+                mesh.vertex(face, x1, y1, z1, 0, 0, color);
+            }
+        }
+    }
+
+    /**
+     * Greedy pass: for every face direction and every slice across its axis, collects the
+     * visible faces of the slice into a 16x16 face mask and covers it with maximal rectangles of
+     * identical (interned) faces.
+     * Mask axes per direction: UP/DOWN (x, z), NORTH/SOUTH (x, y), WEST/EAST (z, y).
+     */
+    private static boolean buildGreedy(BlockMesh mesh, SectionSnapshot snapshot, BooleanSupplier cancelled) {
+        BlockFaceCache.Face[] mask = new BlockFaceCache.Face[16 * 16];
+
+        for (Direction face : DIRECTIONS) {
+            if (cancelled.getAsBoolean()) return false;
+            int faceId = face.getId();
+
+            for (int slice = 0; slice < 16; slice++) {
+                boolean any = false;
+                for (int u = 0; u < 16; u++) {
+                    for (int v = 0; v < 16; v++) {
+                        int i = cellIndex(face, slice, u, v);
+                        int paletteIndex = snapshot.cells[i];
+                        BlockFaceCache.Face visible = null;
+                        if (paletteIndex != VoxelVolume.EMPTY && (snapshot.faceMasks[i] & (1 << faceId)) != 0) {
+                            visible = snapshot.palette[paletteIndex].faces()[faceId];
+                            any = true;
+                        }
+                        mask[u * 16 + v] = visible;
+                    }
+                }
+                if (any) emitRectangles(mesh, face, slice, mask);
+            }
         }
+        return true;
     }
 
-    private static Sprite getBlockFaceSprite(BakedModel model, BlockState state, Direction face) {
-        var quads = model.getQuads(state, face, MinecraftClient.getInstance().world.random);
-        if (!quads.isEmpty()) {
-            return quads.get(0).getSprite();
+    private static void emitRectangles(BlockMesh mesh, Direction face, int slice, BlockFaceCache.Face[] mask) {
+        for (int u = 0; u < 16; u++) {
+            for (int v = 0; v < 16; v++) {
+                BlockFaceCache.Face appearance = mask[u * 16 + v];
+                if (appearance == null) continue;
+
+                int w = 1;
+                while (u + w < 16 && mask[(u + w) * 16 + v] == appearance) w++;
+                int h = 1;
+                grow:
+                while (v + h < 16) {
+                    for (int k = 0; k < w; k++) {
+                        if (mask[(u + k) * 16 + v + h] != appearance) break grow;
+                    }
+                    h++;
+                }
+                for (int k = 0; k < w; k++) {
+                    for (int l = 0; l < h; l++) {
+                        mask[(u + k) * 16 + v + l] = null;
+                    }
+                }
+
+                switch (face) {
+                    case DOWN, UP -> addFaceRect(mesh, u, slice, v, w, h, face, appearance);
+                    case NORTH, SOUTH -> addFaceRect(mesh, u, v, slice, w, h, face, appearance);
+                    case WEST, EAST -> addFaceRect(mesh, slice, v, u, w, h, face, appearance);
+                }
+            }
         }
+    }
 
-        // Fallback to particle texture
-        return model.getParticleSprite();
+    /** Snapshot index of mask cell (u, v) in the given slice; see {@link #buildGreedy}. */
+    private static int cellIndex(Direction face, int slice, int u, int v) {
+        return switch (face) {
+            case DOWN, UP -> (u * 16 + slice) * 16 + v;
+            case NORTH, SOUTH -> (u * 16 + v) * 16 + slice;
+            case WEST, EAST -> (slice * 16 + v) * 16 + u;
+        };
     }
 
-    private static void addBlockFace(BlockMesh mesh, float x, float y, float z, Direction face, Sprite sprite) {
-        float minU = sprite.getMinU();
-        float maxU = sprite.getMaxU();
-        float minV = sprite.getMinV();
-        float maxV = sprite.getMaxV();
+    private static void addBlockToMesh(BlockMesh mesh, BlockFaceCache.Face[] faces, int visibleFaces,
+                                       float x, float y, float z) {
+        for (int i = 0; i < 6; i++) {
+            if ((visibleFaces & (1 << i)) == 0) continue; // Skip hidden faces
 
-        // Simple white lighting for now
-        float r = 1f, g = 1f, b = 1f, a = 1f;
+            addFaceRect(mesh, x, y, z, 1, 1, DIRECTIONS[i], faces[i]);
+        }
+    }
 
-        // Apply simple directional lighting
-        float lightLevel = getLightLevel(face);
-        r *= lightLevel; g *= lightLevel; b *= lightLevel;
+    /**
+     * Adds the given face of the w x h block rectangle starting at (x, y, z). The rectangle
+     * spans x/z for UP and DOWN, x/y for NORTH and SOUTH, z/y for WEST and EAST.
+     */
+    private static void addFaceRect(BlockMesh mesh, float x, float y, float z, int w, int h,
+                                    Direction face, BlockFaceCache.Face appearance) {
+        // Tint times simple directional shading
+        float shade = appearance.shade() ? getLightLevel(face) : 1f;
+        int tint = appearance.tint();
+        int r = Math.round((tint >> 16 & 0xFF) * shade);
+        int g = Math.round((tint >> 8 & 0xFF) * shade);
+        int b = Math.round((tint & 0xFF) * shade);
+        int color = 0xFF000000 | b << 16 | g << 8 | r; // ABGR
 
+        mesh.layer(appearance.layer());
+        mesh.sprite(appearance.minU(), appearance.minV(), appearance.maxU(), appearance.maxV());
         switch (face) {
             case UP -> {
-                mesh.addQuad(
-                        new BlockVertex(x, y + 1, z, minU, minV, r, g, b, a),
-                        new BlockVertex(x + 1, y + 1, z, maxU, minV, r, g, b, a),
-                        new BlockVertex(x + 1, y + 1, z + 1, maxU, maxV, r, g, b, a),
-                        new BlockVertex(x, y + 1, z + 1, minU, maxV, r, g, b, a)
-                );
+                mesh.vertex(face, x, y + 1, z, 0, 0, color);
+                mesh.vertex(face, x + w, y + 1, z, w, 0, color);
+                mesh.vertex(face, x + w, y + 1, z + h, w, h, color);
+                mesh.vertex(face, x, y + 1, z + h, 0, h, color);
             }
             case DOWN -> {
-                mesh.addQuad(
-                        new BlockVertex(x, y, z + 1, minU, maxV, r, g, b, a),
-                        new BlockVertex(x + 1, y, z + 1, maxU, maxV, r, g, b, a),
-                        new BlockVertex(x + 1, y, z, maxU, minV, r, g, b, a),
-                        new BlockVertex(x, y, z, minU, minV, r, g, b, a)
-                );
+                mesh.vertex(face, x, y, z + h, 0, h, color);
+                mesh.vertex(face, x + w, y, z + h, w, h, color);
+                mesh.vertex(face, x + w, y, z, w, 0, color);
+                mesh.vertex(face, x, y, z, 0, 0, color);
             }
             case NORTH -> {
-                mesh.addQuad(
-                        new BlockVertex(x + 1, y, z, maxU, maxV, r, g, b, a),
-                        new BlockVertex(x, y, z, minU, maxV, r, g, b, a),
-                        new BlockVertex(x, y + 1, z, minU, minV, r, g, b, a),
-                        new BlockVertex(x + 1, y + 1, z, maxU, minV, r, g, b, a)
-                );
+                mesh.vertex(face, x + w, y, z, w, h, color);
+                mesh.vertex(face, x, y, z, 0, h, color);
+                mesh.vertex(face, x, y + h, z, 0, 0, color);
+                mesh.vertex(face, x + w, y + h, z, w, 0, color);
             }
             case SOUTH -> {
-                mesh.addQuad(
-                        new BlockVertex(x, y, z + 1, minU, maxV, r, g, b, a),
-                        new BlockVertex(x + 1, y, z + 1, maxU, maxV, r, g, b, a),
-                        new BlockVertex(x + 1, y + 1, z + 1, maxU, minV, r, g, b, a),
-                        new BlockVertex(x, y + 1, z + 1, minU, minV, r, g, b, a)
-                );
+                mesh.vertex(face, x, y, z + 1, 0, h, color);
+                mesh.vertex(face, x + w, y, z + 1, w, h, color);
+                mesh.vertex(face, x + w, y + h, z + 1, w, 0, color);
+                mesh.vertex(face, x, y + h, z + 1, 0, 0, color);
             }
             case WEST -> {
-                mesh.addQuad(
-                        new BlockVertex(x, y, z, minU, maxV, r, g, b, a),
-                        new BlockVertex(x, y, z + 1, maxU, maxV, r, g, b, a),
-                        new BlockVertex(x, y + 1, z + 1, maxU, minV, r, g, b, a),
-                        new BlockVertex(x, y + 1, z, minU, minV, r, g, b, a)
-                );
+                mesh.vertex(face, x, y, z, 0, h, color);
+                mesh.vertex(face, x, y, z + w, w, h, color);
+                mesh.vertex(face, x, y + h, z + w, w, 0, color);
+                mesh.vertex(face, x, y + h, z, 0, 0, color);
             }
             case EAST -> {
-                mesh.addQuad(
-                        new BlockVertex(x + 1, y, z + 1, minU, maxV, r, g, b, a),
-                        new BlockVertex(x + 1, y, z, maxU, maxV, r, g, b, a),
-                        new BlockVertex(x + 1, y + 1, z, maxU, minV, r, g, b, a),
-                        new BlockVertex(x + 1, y + 1, z + 1, minU, minV, r, g, b, a)
-                );
+                mesh.vertex(face, x + 1, y, z + w, 0, h, color);
+                mesh.vertex(face, x + 1, y, z, w, h, color);
+                mesh.vertex(face, x + 1, y + h, z, w, 0, color);
+                mesh.vertex(face, x + 1, y + h, z + w, 0, 0, color);
             }
         }
     }
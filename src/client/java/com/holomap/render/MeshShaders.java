@@ -0,0 +1,84 @@
+package com.holomap.render;
+
+import com.holomap.HoloMapMod;
+import com.mojang.blaze3d.platform.GlStateManager;
+import net.fabricmc.fabric.api.client.rendering.v1.CoreShaderRegistrationCallback;
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormatElement;
+import net.minecraft.util.Identifier;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * The minimap's own core shaders, which read {@link BlockMeshBuilder3D.BlockMesh} vertices in
+ * their packed layout ({@link #FORMAT}), so finished meshes go to the GPU without being decoded
+ * and re-encoded. {@code terrain} draws full-detail meshes from the block atlas, repeating each
+ * quad's sprite once per block, and discards transparent texels like the game's
+ * position/texture/colour program; {@code lod} draws the
+ * untextured LOD meshes.
+ *
+ * Loaded from {@code assets/holomap/shaders/core} through Fabric's core shader registration, so
+ * they reload with the resources; {@code null} until the first load.
+ */
+public final class MeshShaders {
+    // Element ids above the game's own (0-5), so they cannot collide with them
+    private static final VertexFormatElement PACKED_POSITION = VertexFormatElement.register(20, 0,
+            VertexFormatElement.ComponentType.UBYTE, VertexFormatElement.Usage.POSITION, 4);
+    private static final VertexFormatElement SPRITE_MIN = VertexFormatElement.register(21, 0,
+            VertexFormatElement.ComponentType.USHORT, VertexFormatElement.Usage.UV, 2);
+    private static final VertexFormatElement SPRITE_SIZE = VertexFormatElement.register(22, 0,
+            VertexFormatElement.ComponentType.USHORT, VertexFormatElement.Usage.GENERIC, 2);
+    private static final VertexFormatElement TILE = VertexFormatElement.register(23, 0,
+            VertexFormatElement.ComponentType.UBYTE, VertexFormatElement.Usage.GENERIC, 4);
+
+    /**
+     * x, y, z and a pad byte as unsigned bytes in 1/8 blocks, the sprite's atlas corner as
+     * unsigned shorts, the ABGR colour, the sprite's atlas size, then the vertex's place across
+     * the quad in blocks and two pad bytes; see {@link BlockMeshBuilder3D.BlockMesh}.
+     */
+    static final VertexFormat FORMAT = VertexFormat.builder()
+            .add("Position", PACKED_POSITION)
+            .add("SpriteMin", SPRITE_MIN)
+            .add("Color", VertexFormatElement.COLOR)
+            .add("SpriteSize", SPRITE_SIZE)
+            .add("Tile", TILE)
+            .build();
+
+    private static ShaderProgram terrain;
+    private static ShaderProgram lod;
+
+    private MeshShaders() {}
+
+    public static void register() {
+        CoreShaderRegistrationCallback.EVENT.register(context -> {
+            context.register(Identifier.of(HoloMapMod.MOD_ID, "terrain"), FORMAT, program -> terrain = program);
+            context.register(Identifier.of(HoloMapMod.MOD_ID, "lod"), FORMAT, program -> lod = program);
+        });
+    }
+
+    static ShaderProgram terrain() {
+        return terrain;
+    }
+
+    static ShaderProgram lod() {
+        return lod;
+    }
+
+    /**
+     * Points the attributes of {@link #FORMAT}, in its order, at the bound array buffer. The
+     * bound vertex array keeps them.
+     */
+    static void setupAttributes() {
+        int stride = BlockMeshBuilder3D.BlockMesh.VERTEX_BYTES;
+        GlStateManager._enableVertexAttribArray(0);
+        GlStateManager._vertexAttribPointer(0, 3, GL11.GL_UNSIGNED_BYTE, false, stride, 0); // pad byte unread
+        GlStateManager._enableVertexAttribArray(1);
+        GlStateManager._vertexAttribPointer(1, 2, GL11.GL_UNSIGNED_SHORT, true, stride, 4);
+        GlStateManager._enableVertexAttribArray(2);
+        GlStateManager._vertexAttribPointer(2, 4, GL11.GL_UNSIGNED_BYTE, true, stride, 8);
+        GlStateManager._enableVertexAttribArray(3);
+        GlStateManager._vertexAttribPointer(3, 2, GL11.GL_UNSIGNED_SHORT, true, stride, 12);
+        GlStateManager._enableVertexAttribArray(4);
+        GlStateManager._vertexAttribPointer(4, 2, GL11.GL_UNSIGNED_BYTE, false, stride, 16); // pad bytes unread
+    }
+}
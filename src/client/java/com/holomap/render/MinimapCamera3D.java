@@ -1,12 +1,14 @@
 package com.holomap.render;
 
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.MathHelper;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 
 public final class MinimapCamera3D {
     private static final MinimapCamera3D INSTANCE = new MinimapCamera3D();
+    private static final float SORT_BUCKET_DEGREES = 15f;
 
     private float lastPlayerYaw = 0f;
     private float currentYaw = 0f;
@@ -18,6 +20,9 @@ public final class MinimapCamera3D {
     private final Matrix4f projectionMatrix = new Matrix4f();
     private final Matrix4f viewProjectionMatrix = new Matrix4f();
     private boolean matricesDirty = true;
+    private int visibleFaceMask = 0x3F;
+    private int sortBucket = 0;
+    private final Vector3f toCamera = new Vector3f(0, 1, 0);
 
     private MinimapCamera3D() {}
 
@@ -50,6 +55,33 @@ public final class MinimapCamera3D {
         return new Matrix4f(viewProjectionMatrix); // Return copy to avoid modifications
     }
 
+    /**
+     * Face directions (bit {@link Direction#getId()}) whose normals point towards the camera.
+     * The projection is orthographic, so this holds for every block on screen. Valid after
+     * {@link #getViewProjectionMatrix}.
+     */
+    public int getVisibleFaceMask() {
+        return visibleFaceMask;
+    }
+
+    /**
+     * Camera yaw rounded to {@link #SORT_BUCKET_DEGREES}; translucent geometry is re-sorted only
+     * when this changes. Valid after {@link #getViewProjectionMatrix}.
+     */
+    public int getSortBucket() {
+        return sortBucket;
+    }
+
+    /** Smoothed yaw the camera orbits at; only changes while it is catching up with the player. */
+    public float getYaw() {
+        return currentYaw;
+    }
+
+    /** Unit vector from the look target towards the camera, in block space. */
+    public Vector3f getToCamera() {
+        return new Vector3f(toCamera);
+    }
+
     private void updateMatrices(int viewportWidth, int viewportHeight) {
         // Camera position orbiting around center
         float yawRad = (float) Math.toRadians(currentYaw);
@@ -73,6 +105,16 @@ public final class MinimapCamera3D {
 
         // Combined matrix
         viewProjectionMatrix.set(projectionMatrix).mul(viewMatrix);
+
+        cameraPos.sub(target, toCamera).normalize();
+        sortBucket = Math.round(currentYaw / SORT_BUCKET_DEGREES);
+        int mask = 0;
+        for (Direction face : Direction.values()) {
+            float facing = face.getOffsetX() * toCamera.x + face.getOffsetY() * toCamera.y
+                    + face.getOffsetZ() * toCamera.z;
+            if (facing > 0f) mask |= 1 << face.getId();
+        }
+        visibleFaceMask = mask;
     }
 
     public void forceUpdate() {
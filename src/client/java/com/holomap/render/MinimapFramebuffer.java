@@ -0,0 +1,82 @@
+package com.holomap.render;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.SimpleFramebuffer;
+import net.minecraft.client.render.BufferRenderer;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import org.joml.Matrix4f;
+
+/**
+ * Off-screen target holding the last rendered picture of the minimap, so the HUD can blit it
+ * as one textured quad on frames where nothing changed.
+ *
+ * The target is cleared to the backdrop colour and everything drawn into it should blend with
+ * {@link #blendIntoTarget}, which keeps its colours premultiplied by alpha; {@link #blit} composites
+ * them over the screen accordingly. Render thread only.
+ */
+final class MinimapFramebuffer {
+    private static final float BACKDROP_ALPHA = 128 / 255f;
+
+    private SimpleFramebuffer framebuffer;
+    private int width, height;
+
+    /**
+     * Makes the target {@code width} x {@code height} framebuffer pixels. Returns whether it was
+     * created or resized, in which case its previous picture is gone.
+     */
+    boolean ensureSize(int width, int height) {
+        if (framebuffer != null && this.width == width && this.height == height) return false;
+        if (framebuffer == null) {
+            framebuffer = new SimpleFramebuffer(width, height, true, MinecraftClient.IS_SYSTEM_MAC);
+            framebuffer.setClearColor(0f, 0f, 0f, BACKDROP_ALPHA);
+        } else {
+            framebuffer.resize(width, height, MinecraftClient.IS_SYSTEM_MAC);
+        }
+        this.width = width;
+        this.height = height;
+        return true;
+    }
+
+    /** Clears the target to the backdrop and redirects drawing into it. */
+    void beginWrite() {
+        framebuffer.clear(MinecraftClient.IS_SYSTEM_MAC);
+        framebuffer.beginWrite(true);
+    }
+
+    /** Sends drawing back to the main framebuffer and its viewport. */
+    void endWrite() {
+        MinecraftClient.getInstance().getFramebuffer().beginWrite(true);
+    }
+
+    /** Blend function for drawing into the target; alpha accumulates instead of being replaced. */
+    static void blendIntoTarget() {
+        RenderSystem.blendFuncSeparate(GlStateManager.SrcFactor.SRC_ALPHA, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA,
+                GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA);
+    }
+
+    /** Draws the last picture over the GUI rectangle at ({@code x}, {@code y}), {@code size} wide. */
+    void blit(Matrix4f positionMatrix, int x, int y, int size) {
+        if (framebuffer == null) return;
+
+        RenderSystem.setShader(GameRenderer::getPositionTexProgram);
+        RenderSystem.setShaderTexture(0, framebuffer.getColorAttachment());
+        RenderSystem.enableBlend();
+        RenderSystem.blendFunc(GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA);
+
+        // Framebuffer rows run bottom-up, so the top of the rectangle samples v = 1
+        var buffer = Tessellator.getInstance().begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_TEXTURE);
+        buffer.vertex(positionMatrix, x, y, 0).texture(0f, 1f);
+        buffer.vertex(positionMatrix, x, y + size, 0).texture(0f, 0f);
+        buffer.vertex(positionMatrix, x + size, y + size, 0).texture(1f, 0f);
+        buffer.vertex(positionMatrix, x + size, y, 0).texture(1f, 1f);
+        BufferRenderer.drawWithGlobalProgram(buffer.end());
+
+        RenderSystem.defaultBlendFunc();
+        RenderSystem.disableBlend();
+    }
+}
@@ -1,26 +1,40 @@
 package com.holomap.render;
 
+import com.holomap.debug.HoloMapEvents;
+import com.holomap.debug.HoloMapMetrics;
+import com.holomap.debug.MetricsOverlay;
 import com.holomap.map.MinimapData3D;
 import com.holomap.scan.BlockScanner3D;
 import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.systems.VertexSorter;
 import net.fabricmc.fabric.api.client.rendering.v1.HudRenderCallback;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
-import net.minecraft.client.render.BufferBuilder;
-import net.minecraft.client.render.BufferRenderer;
-import net.minecraft.client.render.GameRenderer;
-import net.minecraft.client.render.Tessellator;
-import net.minecraft.client.render.VertexFormat;
-import net.minecraft.client.render.VertexFormats;
 import net.minecraft.client.texture.SpriteAtlasTexture;
 import net.minecraft.client.util.Window;
-import net.minecraft.client.util.math.MatrixStack;
-import net.minecraft.util.math.ColorHelper;
+import net.minecraft.util.math.BlockPos;
 import org.joml.Matrix4f;
 
 public final class MinimapRenderer3D {
+    private static final int PAD = 8;
+    // Blocks across the top-down view, cycled by the zoom key
+    private static final int[] TOP_DOWN_SPANS = {256, 512, 1024, 2048, 4096};
+    private static final int BACKDROP = 0x80000000;
+
     private static boolean enabled = true;
-    private static BlockMeshBuilder3D.BlockMesh cachedMesh = null;
+    private static boolean topDown = false;
+    private static int topDownZoom = 1;
+    private static final SectionedMesh MESH = new SectionedMesh();
+    // The map is drawn into this and only redrawn when something it shows changed
+    private static final MinimapFramebuffer TARGET = new MinimapFramebuffer();
+
+    private static int maxRedrawsPerSecond = 30; // 0 = redraw as soon as anything changes
+    private static long lastRedrawNanos = 0;
+    // What the picture in TARGET was drawn from
+    private static long drawnMeshVersion = -1;
+    private static float drawnYaw = Float.NaN;
+    private static BlockPos drawnOrigin = null;
+    private static float drawnSpan = 0;
 
     private MinimapRenderer3D() {}
 
@@ -32,7 +46,12 @@ public final class MinimapRenderer3D {
             if (client == null || client.player == null || client.world == null) return;
 
             if (!MinimapData3D.get().isReady()) {
-                BlockScanner3D.scanAroundPlayerAsync(client.player, 24, 32); // Reduced for performance
+                var level = QualityGovernor.get().level();
+                BlockScanner3D.scanAroundPlayerAsync(client.player, level.horizontalRadius(), level.verticalRange());
+                if (!topDown) return; // the top-down view draws from cached tiles meanwhile
+            }
+            if (topDown) {
+                drawTopDown(drawContext);
                 return;
             }
 
@@ -45,6 +64,24 @@ public final class MinimapRenderer3D {
         enabled = !enabled;
     }
 
+    /** Switches between the 3D view and the top-down tile view; returns whether top-down is on. */
+    public static boolean toggleTopDown() {
+        topDown = !topDown;
+        if (!topDown) TilePyramid.get().release();
+        return topDown;
+    }
+
+    /** Steps the top-down view to the next wider zoom, back to the closest after the widest; returns its span. */
+    public static int cycleTopDownZoom() {
+        topDownZoom = (topDownZoom + 1) % TOP_DOWN_SPANS.length;
+        return TOP_DOWN_SPANS[topDownZoom];
+    }
+
+    /** Caps how often the cached minimap picture is redrawn while it keeps changing; 0 removes the cap. */
+    public static void setMaxRedrawsPerSecond(int redraws) {
+        maxRedrawsPerSecond = Math.max(0, redraws);
+    }
+
     private static void drawMinimap3D(DrawContext dc) {
         var client = MinecraftClient.getInstance();
         Window win = client.getWindow();
@@ -52,77 +89,134 @@ public final class MinimapRenderer3D {
         int screenH = win.getScaledHeight();
 
         // Minimap area
-        int pad = 8;
-        int viewSize = Math.min(200, Math.min(screenW, screenH) - 2 * pad);
-        int viewX = screenW - pad - viewSize;
-        int viewY = screenH - pad - viewSize;
-
-        // Backdrop
-        int bg = ColorHelper.Argb.getArgb(128, 0, 0, 0);
-        dc.fill(viewX, viewY, viewX + viewSize, viewY + viewSize, bg);
+        int viewSize = viewSize(win);
+        int viewX = screenW - PAD - viewSize;
+        int viewY = screenH - PAD - viewSize;
+        if (viewSize <= 0) return;
+        long frameStart = System.nanoTime();
 
-        // Build or update mesh
+        // Swap in finished sections and hand stale ones to the mesh workers
         var data = MinimapData3D.get();
-        if (cachedMesh == null || data.isMeshDirty()) {
-            cachedMesh = BlockMeshBuilder3D.buildMesh();
-            data.markMeshClean();
+        MESH.collectChanges(data);
+        long uploadStart = System.nanoTime();
+        MESH.update(data);
+        long uploadNanos = System.nanoTime() - uploadStart;
+
+        // Redraw the cached picture when what it shows changed, at most maxRedrawsPerSecond times
+        int pixels = (int) Math.round(viewSize * win.getScaleFactor());
+        var origin = data.origin();
+        var camera = MinimapCamera3D.get();
+        float span = viewSpan(data.horizontalRadius());
+        boolean lost = TARGET.ensureSize(pixels, pixels);
+        boolean stale = MESH.version() != drawnMeshVersion || MESH.hasPendingResorts()
+                || camera.getYaw() != drawnYaw || !origin.equals(drawnOrigin) || span != drawnSpan;
+        long now = System.nanoTime();
+        boolean due = maxRedrawsPerSecond == 0 || now - lastRedrawNanos >= 1_000_000_000L / maxRedrawsPerSecond;
+        if (lost || (stale && due)) {
+            drawnMeshVersion = MESH.version();
+            drawnYaw = camera.getYaw();
+            drawnOrigin = origin;
+            drawnSpan = span;
+            lastRedrawNanos = now;
+            dc.draw(); // flush the GUI batch before switching targets
+
+            var event = new HoloMapEvents.Redraw();
+            event.begin();
+            renderMesh3D(origin, viewSize, span);
+            if (HoloMapMetrics.enabled()) {
+                HoloMapMetrics.record(HoloMapMetrics.Timer.REDRAW, System.nanoTime() - now);
+                HoloMapMetrics.add(HoloMapMetrics.Counter.REDRAWS, 1);
+            }
+            if (event.shouldCommit()) {
+                event.sections = MESH.lastDrawnSections();
+                event.commit();
+            }
         }
 
-        if (cachedMesh != null && !cachedMesh.vertices.isEmpty()) {
-            renderMesh3D(dc, cachedMesh, viewX, viewY, viewSize);
-        }
+        TARGET.blit(dc.getMatrices().peek().getPositionMatrix(), viewX, viewY, viewSize);
+
+        // Section uploads happen in update, translucent re-sorts during the redraw
+        HoloMapMetrics.add(HoloMapMetrics.Counter.UPLOADED_BYTES, MESH.takeUploadedBytes());
+        HoloMapMetrics.add(HoloMapMetrics.Counter.FRAMES, 1);
+        QualityGovernor.get().onFrame(System.nanoTime() - frameStart - uploadNanos);
+        MetricsOverlay.draw(dc, viewX - PAD / 2, viewY + viewSize, MESH);
+    }
+
+    /** North-up map of the area around the player, drawn from {@link TilePyramid} pages. */
+    private static void drawTopDown(DrawContext dc) {
+        var client = MinecraftClient.getInstance();
+        Window win = client.getWindow();
+        int viewSize = viewSize(win);
+        int viewX = win.getScaledWidth() - PAD - viewSize;
+        int viewY = win.getScaledHeight() - PAD - viewSize;
+        if (viewSize <= 0) return;
+
+        var pyramid = TilePyramid.get();
+        pyramid.update(client.world);
+
+        dc.fill(viewX, viewY, viewX + viewSize, viewY + viewSize, BACKDROP);
+        dc.draw(); // the pages are drawn directly, after the batched backdrop
+        int pixels = (int) Math.round(viewSize * win.getScaleFactor());
+        pyramid.draw(dc.getMatrices().peek().getPositionMatrix(), viewX, viewY, viewSize, pixels,
+                client.player.getX(), client.player.getZ(), TOP_DOWN_SPANS[topDownZoom]);
+
+        int centerX = viewX + viewSize / 2, centerY = viewY + viewSize / 2;
+        dc.fill(centerX - 1, centerY - 1, centerX + 2, centerY + 2, 0xFFFFFFFF);
+        MetricsOverlay.draw(dc, viewX - PAD / 2, viewY + viewSize, MESH);
     }
 
-    private static void renderMesh3D(DrawContext dc, BlockMeshBuilder3D.BlockMesh mesh,
-                                     int viewX, int viewY, int viewSize) {
-        MatrixStack matrices = dc.getMatrices();
-        matrices.push();
+    /** Side of the minimap square in GUI units, which sits {@link #PAD} from the bottom right corner. */
+    private static int viewSize(Window win) {
+        return Math.min(200, Math.min(win.getScaledWidth(), win.getScaledHeight()) - 2 * PAD);
+    }
 
-        // Translate to minimap area center
-        matrices.translate(viewX + viewSize / 2f, viewY + viewSize / 2f, 0);
+    /** Blocks across the minimap square: a bigger scan zooms out so all of it fits. */
+    private static float viewSpan(int horizontalRadius) {
+        return Math.max(120f, 2 * horizontalRadius + 16);
+    }
 
-        // Apply 3D camera transformation
+    /**
+     * Draws the mesh into {@link #TARGET}, which covers a {@code viewSize} square of GUI units
+     * showing {@code span} blocks across.
+     */
+    private static void renderMesh3D(BlockPos origin, int viewSize, float span) {
+        // GUI units of the minimap square; the model-view keeps the GUI's depth offset
+        RenderSystem.backupProjectionMatrix();
+        RenderSystem.setProjectionMatrix(new Matrix4f().setOrtho(0f, viewSize, viewSize, 0f, 1000f, 21000f),
+                VertexSorter.BY_Z);
+        TARGET.beginWrite();
+
+        // Translate to minimap area center, then apply the 3D camera transformation
         Matrix4f mvpMatrix = MinimapCamera3D.get().getViewProjectionMatrix(viewSize, viewSize);
-        matrices.multiplyPositionMatrix(mvpMatrix);
+
+        // Scale down for minimap (blocks are too big otherwise)
+        float scale = viewSize / span;
+        Matrix4f screen = new Matrix4f().translate(viewSize / 2f, viewSize / 2f, 0).mul(mvpMatrix).scale(scale);
+        Matrix4f modelView = new Matrix4f(RenderSystem.getModelViewMatrix()).mul(screen);
 
         // Setup 3D rendering
         RenderSystem.enableBlend();
-        RenderSystem.defaultBlendFunc();
+        MinimapFramebuffer.blendIntoTarget();
         RenderSystem.enableDepthTest();
         RenderSystem.depthFunc(515); // GL_LESS
 
         // Bind block atlas texture
-        RenderSystem.setShader(GameRenderer::getPositionTexColorProgram);
         RenderSystem.setShaderTexture(0, SpriteAtlasTexture.BLOCK_ATLAS_TEXTURE);
 
-        // Create buffer and render triangles
-        BufferBuilder buf = Tessellator.getInstance().begin(VertexFormat.DrawMode.TRIANGLES,
-                VertexFormats.POSITION_TEXTURE_COLOR);
-
-        Matrix4f matrix = matrices.peek().getPositionMatrix();
-
-        // Add vertices without manual transformation - let the vertex shader handle it
-        for (int i = 0; i < mesh.indices.size(); i += 3) {
-            for (int j = 0; j < 3; j++) {
-                var vertex = mesh.vertices.get(mesh.indices.get(i + j));
-
-                // Scale down for minimap (blocks are too big otherwise)
-                float scale = viewSize / 120f; // Adjust this to change minimap zoom
-                float x = vertex.x * scale;
-                float y = vertex.y * scale;
-                float z = vertex.z * scale;
-
-                buf.vertex(matrix, x, y, z)
-                        .texture(vertex.u, vertex.v)
-                        .color(vertex.r, vertex.g, vertex.b, vertex.a);
-            }
+        // Retained per-section buffers; only translucent quads are re-sorted, when the camera
+        // turns. Sections outside the minimap square and faces pointing away from the camera are culled
+        var camera = MinimapCamera3D.get();
+        if (MeshShaders.terrain() != null && MeshShaders.lod() != null) {
+            MESH.draw(modelView, RenderSystem.getProjectionMatrix(), MeshShaders.terrain(), MeshShaders.lod(), origin,
+                    screen, 0, 0, viewSize, camera.getVisibleFaceMask(),
+                    camera.getSortBucket(), camera.getToCamera());
         }
 
-        BufferRenderer.drawWithGlobalProgram(buf.end());
-
         RenderSystem.disableDepthTest();
+        RenderSystem.defaultBlendFunc();
         RenderSystem.disableBlend();
 
-        matrices.pop();
+        TARGET.endWrite();
+        RenderSystem.restoreProjectionMatrix();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package com.holomap.render;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import java.nio.ByteBuffer;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.VertexFormat;
+import org.joml.Matrix4f;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+/**
+ * A GPU vertex buffer filled straight from packed {@link BlockMeshBuilder3D.BlockMesh} bytes in
+ * {@link MeshShaders#FORMAT}, drawn as quads through the game's shared sequential index buffer.
+ * Stands in for {@link VertexBuffer}, which only takes vertices built by a BufferBuilder.
+ * Render thread only.
+ */
+final class PackedVertexBuffer implements AutoCloseable {
+    private final int vertexArray;
+    private final int vertexBuffer;
+    private final int usage;
+    private RenderSystem.ShapeIndexBuffer indices;
+    private int indexCount;
+
+    PackedVertexBuffer(boolean dynamic) {
+        this.usage = dynamic ? GL15.GL_DYNAMIC_DRAW : GL15.GL_STATIC_DRAW;
+        this.vertexArray = GlStateManager._glGenVertexArrays();
+        this.vertexBuffer = GlStateManager._glGenBuffers();
+        GlStateManager._glBindVertexArray(vertexArray);
+        GlStateManager._glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBuffer);
+        MeshShaders.setupAttributes();
+    }
+
+    /** Replaces the contents with the quads between the position and limit of {@code vertices}. */
+    void upload(ByteBuffer vertices) {
+        GlStateManager._glBindVertexArray(vertexArray);
+        GlStateManager._glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBuffer);
+        GlStateManager._glBufferData(GL15.GL_ARRAY_BUFFER, vertices, usage);
+        indexCount = vertices.remaining() / (4 * BlockMeshBuilder3D.BlockMesh.VERTEX_BYTES) * 6;
+        indices = RenderSystem.getSequentialBuffer(VertexFormat.DrawMode.QUADS);
+        indices.bindAndGrow(indexCount);
+    }
+
+    void draw(Matrix4f modelView, Matrix4f projection, ShaderProgram program) {
+        if (indexCount == 0) return;
+        GlStateManager._glBindVertexArray(vertexArray);
+        program.initializeUniforms(VertexFormat.DrawMode.QUADS, modelView, projection,
+                MinecraftClient.getInstance().getWindow());
+        program.bind();
+        RenderSystem.drawElements(GL11.GL_TRIANGLES, indexCount, indices.getIndexType().glType);
+        program.unbind();
+    }
+
+    @Override
+    public void close() {
+        GlStateManager._glDeleteBuffers(vertexBuffer);
+        GlStateManager._glDeleteVertexArrays(vertexArray);
+    }
+
+    /**
+     * Unbinds the vertex array after a batch of uploads or draws. Goes through
+     * {@link VertexBuffer#unbind} so the game forgets which of its own buffers it last bound.
+     */
+    static void unbind() {
+        VertexBuffer.unbind();
+    }
+}
@@ -0,0 +1,189 @@
+package com.holomap.render;
+
+import com.holomap.HoloMapMod;
+import com.holomap.scan.BlockScanner3D;
+import com.holomap.scan.ScanScheduler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.client.MinecraftClient;
+
+/**
+ * Picks how much map this machine can afford. Each {@link Level} fixes the scan radius and
+ * vertical range (the scan depth follows the range, see {@link BlockScanner3D#scanDepth}), how
+ * far out sections keep full and half mesh detail, and the redraw cap.
+ *
+ * The renderer reports the CPU time of every minimap frame, section uploads left out, smoothed
+ * here, and the latency of the last full scan is read from {@link ScanScheduler}. Every {@link #EVALUATE_INTERVAL_NANOS}:
+ * if either is over its budget the level drops one step; once both stayed under
+ * {@link #UPGRADE_HEADROOM} of their budgets for {@link #UPGRADE_AFTER} evaluations in a row it
+ * rises one step. A change rescans and remeshes, so nothing is judged for
+ * {@link #SETTLE_NANOS} afterwards, and a level given up is not tried again for
+ * {@link #BACKOFF_NANOS}, which keeps it from flapping between two levels.
+ *
+ * Budgets and the radius bounds are read from {@code config/holomap.properties}, which is
+ * written with the defaults if missing. Client thread only.
+ */
+public final class QualityGovernor {
+    private static final QualityGovernor INSTANCE = new QualityGovernor();
+
+    public record Level(int horizontalRadius, int verticalRange, int fullDetailRadius, int halfDetailRadius,
+                        int maxRedrawsPerSecond) {}
+
+    private static final Level[] LEVELS = {
+            new Level(24, 16, 12, 24, 15),
+            new Level(32, 24, 16, 32, 20),
+            new Level(48, 32, 24, 64, 30),
+            new Level(64, 32, 24, 64, 30),
+            new Level(96, 32, 32, 64, 45),
+            new Level(128, 32, 48, 96, 60),
+    };
+    private static final int START_LEVEL = 2;
+
+    private static final long EVALUATE_INTERVAL_NANOS = 2_000_000_000L;
+    private static final long SETTLE_NANOS = 5_000_000_000L;
+    private static final long BACKOFF_NANOS = 60_000_000_000L;
+    private static final double UPGRADE_HEADROOM = 0.6;
+    private static final int UPGRADE_AFTER = 3;
+    private static final double SMOOTHING = 0.05; // per frame
+
+    private final long frameBudgetNanos;
+    private final long scanBudgetNanos;
+    private final int minLevel, maxLevel;
+
+    private int level;
+    private double frameNanos = -1;
+    private long scanNanos = 0;
+    private long seenScans = 0;
+    private long lastEvaluation = 0;
+    private long settledAt = 0;
+    private int calmEvaluations = 0;
+    private final long[] backoffUntil = new long[LEVELS.length];
+
+    private QualityGovernor() {
+        Properties config = loadConfig();
+        frameBudgetNanos = readLong(config, "quality.frameBudgetMicros", 1000) * 1000;
+        scanBudgetNanos = readLong(config, "quality.scanBudgetMillis", 500) * 1_000_000;
+        int minRadius = (int) readLong(config, "quality.minRadius", LEVELS[0].horizontalRadius());
+        int maxRadius = (int) readLong(config, "quality.maxRadius", LEVELS[LEVELS.length - 1].horizontalRadius());
+
+        int min = 0, max = LEVELS.length - 1;
+        while (min < max && LEVELS[min].horizontalRadius() < minRadius) min++;
+        while (max > min && LEVELS[max].horizontalRadius() > maxRadius) max--;
+        minLevel = min;
+        maxLevel = max;
+        level = Math.max(minLevel, Math.min(maxLevel, START_LEVEL));
+        applyDetail(LEVELS[level]);
+    }
+
+    public static QualityGovernor get() {
+        return INSTANCE;
+    }
+
+    public Level level() {
+        return LEVELS[level];
+    }
+
+    /**
+     * Called once per minimap frame with the CPU time it took, not counting section uploads:
+     * those have their own per-frame cap in {@link SectionedMesh} and only burst while new
+     * terrain comes in, which a lower level would not make cheaper.
+     */
+    public void onFrame(long nanos) {
+        frameNanos = frameNanos < 0 ? nanos : frameNanos + (nanos - frameNanos) * SMOOTHING;
+
+        long now = System.nanoTime();
+        if (now - lastEvaluation < EVALUATE_INTERVAL_NANOS) return;
+        lastEvaluation = now;
+
+        var scheduler = ScanScheduler.get();
+        if (scheduler.completedCount() != seenScans) {
+            seenScans = scheduler.completedCount();
+            scanNanos = scheduler.lastLatencyNanos();
+        }
+        if (now < settledAt) return;
+
+        boolean over = frameNanos > frameBudgetNanos || scanNanos > scanBudgetNanos;
+        boolean calm = frameNanos < frameBudgetNanos * UPGRADE_HEADROOM && scanNanos < scanBudgetNanos * UPGRADE_HEADROOM;
+        if (over) {
+            calmEvaluations = 0;
+            if (level > minLevel) {
+                backoffUntil[level] = now + BACKOFF_NANOS;
+                change(level - 1, now);
+            }
+            return;
+        }
+        calmEvaluations = calm ? calmEvaluations + 1 : 0;
+        if (calmEvaluations >= UPGRADE_AFTER && level < maxLevel && now >= backoffUntil[level + 1]) {
+            change(level + 1, now);
+        }
+    }
+
+    @Override
+    public String toString() {
+        Level current = LEVELS[level];
+        return String.format("level %d/%d (r=%d v=%d), frame %.2f/%.2f ms, scan %d/%d ms", level, maxLevel,
+                current.horizontalRadius(), current.verticalRange(), Math.max(0, frameNanos) / 1e6,
+                frameBudgetNanos / 1e6, scanNanos / 1_000_000, scanBudgetNanos / 1_000_000);
+    }
+
+    private void change(int newLevel, long now) {
+        HoloMapMod.LOGGER.debug("[HoloMap] Quality level {} -> {}: {}", level, newLevel, this);
+        level = newLevel;
+        calmEvaluations = 0;
+        settledAt = now + SETTLE_NANOS;
+        frameNanos = -1;
+
+        Level current = LEVELS[level];
+        applyDetail(current);
+        var player = MinecraftClient.getInstance().player;
+        if (player != null) {
+            BlockScanner3D.scanAroundPlayerAsync(player, current.horizontalRadius(), current.verticalRange());
+        }
+    }
+
+    private static void applyDetail(Level level) {
+        SectionedMesh.setDetailRadii(level.fullDetailRadius(), level.halfDetailRadius());
+        MinimapRenderer3D.setMaxRedrawsPerSecond(level.maxRedrawsPerSecond());
+    }
+
+    private static Properties loadConfig() {
+        Path path = FabricLoader.getInstance().getConfigDir().resolve("holomap.properties");
+        var config = new Properties();
+        try {
+            if (Files.exists(path)) {
+                try (InputStream in = Files.newInputStream(path)) {
+                    config.load(in);
+                }
+            } else {
+                var defaults = new Properties();
+                defaults.setProperty("quality.frameBudgetMicros", "1000");
+                defaults.setProperty("quality.scanBudgetMillis", "500");
+                defaults.setProperty("quality.minRadius", Integer.toString(LEVELS[0].horizontalRadius()));
+                defaults.setProperty("quality.maxRadius", Integer.toString(LEVELS[LEVELS.length - 1].horizontalRadius()));
+                Files.createDirectories(path.getParent());
+                try (OutputStream out = Files.newOutputStream(path)) {
+                    defaults.store(out, "HoloMap: minimap CPU time per frame, full scan latency, scan radius bounds");
+                }
+            }
+        } catch (IOException e) {
+            HoloMapMod.LOGGER.warn("[HoloMap] Could not read {}, using defaults", path, e);
+        }
+        return config;
+    }
+
+    private static long readLong(Properties config, String key, long fallback) {
+        String value = config.getProperty(key);
+        if (value == null) return fallback;
+        try {
+            return Math.max(1, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            HoloMapMod.LOGGER.warn("[HoloMap] Ignoring {}={} in holomap.properties", key, value);
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.holomap.render;
+
+import com.holomap.map.VoxelVolume;
+
+/**
+ * Immutable copy of the volume cells inside one 16x16x16 world section, taken on the render
+ * thread so a mesh worker can build from it while the live volume keeps changing. The palette
+ * is already resolved to face appearances, so workers never look at block states or models.
+ */
+final class SectionSnapshot {
+    final int originX, originY, originZ;
+    final int lodStep; // mesh cell size the section should be built at, see SectionedMesh
+    final BlockFaceCache.Appearance[] palette;
+    // (x * 16 + y) * 16 + z, section-local; EMPTY where the volume has no cell
+    final short[] cells = new short[16 * 16 * 16];
+    final byte[] faceMasks = new byte[16 * 16 * 16];
+    private boolean empty = true;
+
+    private SectionSnapshot(int originX, int originY, int originZ, int lodStep,
+                            BlockFaceCache.Appearance[] palette) {
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.lodStep = lodStep;
+        this.palette = palette;
+    }
+
+    /**
+     * Copies the section at the given world min corner. {@code palette} must be resolved from
+     * the volume palette no earlier than this call, see {@link #resolvePalette}.
+     */
+    static SectionSnapshot capture(VoxelVolume volume, BlockFaceCache.Appearance[] palette,
+                                   int originX, int originY, int originZ, int lodStep) {
+        var snapshot = new SectionSnapshot(originX, originY, originZ, lodStep, palette);
+
+        int x0 = Math.max(0, originX - volume.minX());
+        int y0 = Math.max(0, originY - volume.minY());
+        int z0 = Math.max(0, originZ - volume.minZ());
+        int x1 = Math.min(volume.sizeX(), originX + 16 - volume.minX());
+        int y1 = Math.min(volume.sizeY(), originY + 16 - volume.minY());
+        int z1 = Math.min(volume.sizeZ(), originZ + 16 - volume.minZ());
+
+        int offsetX = volume.minX() - originX;
+        int offsetY = volume.minY() - originY;
+        int offsetZ = volume.minZ() - originZ;
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                for (int z = z0; z < z1; z++) {
+                    int paletteIndex = volume.paletteIndex(x, y, z);
+                    if (paletteIndex == VoxelVolume.EMPTY) continue;
+
+                    int i = ((x + offsetX) * 16 + y + offsetY) * 16 + z + offsetZ;
+                    snapshot.cells[i] = (short) paletteIndex;
+                    snapshot.faceMasks[i] = (byte) volume.faceMask(x, y, z);
+                    snapshot.empty = false;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /** Resolves every palette entry through {@link BlockFaceCache}; index EMPTY stays null. */
+    static BlockFaceCache.Appearance[] resolvePalette(VoxelVolume volume) {
+        var palette = new BlockFaceCache.Appearance[volume.paletteSize()];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = BlockFaceCache.appearance(volume.paletteEntry(i));
+        }
+        return palette;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+}
@@ -0,0 +1,500 @@
+package com.holomap.render;
+
+import com.holomap.HoloMapMod;
+import com.holomap.debug.HoloMapEvents;
+import com.holomap.debug.HoloMapMetrics;
+import com.holomap.map.MinimapData3D;
+import com.holomap.map.VoxelVolume;
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+/**
+ * The minimap mesh split into 16x16x16 sections aligned with world chunk sections.
+ *
+ * Each section keeps its last finished {@link BlockMeshBuilder3D.BlockMesh}, uploaded, and is
+ * rebuilt only when marked dirty. Rebuilds run on a small worker pool: every frame {@link #update} swaps in
+ * the meshes workers have finished, then snapshots at most {@link #MAX_DISPATCH_PER_FRAME} dirty
+ * sections (stopping early once {@link #FRAME_BUDGET_NANOS} is used up) and hands them off.
+ * Stale sections keep drawing their previous mesh until the replacement arrives, and the render
+ * thread never waits on a worker.
+ *
+ * A full scan cancels every build still in flight; a section re-dirtied while building
+ * cancels its own older build.
+ *
+ * Finished meshes are uploaded once, their packed bytes as they are, into retained
+ * {@link PackedVertexBuffer}s (one per face direction) and drawn from there with the section
+ * offset and minimap scale folded into the model-view matrix. Sections whose bounds miss the
+ * minimap viewport are skipped, and so are directions facing away from the orthographic camera,
+ * so a frame without changes issues at most three draw calls per visible section and pass
+ * (opaque, cutout, translucent; see {@link BlockMeshBuilder3D.Layer}).
+ *
+ * Sections farther from the player are built at a coarser level of detail (see
+ * {@link #lodStep}); when the player crosses into another section column or the tier distances
+ * change, sections whose tier changed are queued again. Everything except
+ * {@link MeshJob#run} is render thread only.
+ */
+public final class SectionedMesh {
+    private static final int MAX_DISPATCH_PER_FRAME = 8;
+    private static final long FRAME_BUDGET_NANOS = 2_000_000L; // 2 ms
+    private static final int MAX_IN_FLIGHT = 32;
+    private static final int MAX_RESORTS_PER_FRAME = 16;
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() / 2)), workerFactory());
+
+    // Horizontal distance (blocks) from the player within which sections keep full detail,
+    // and within which they use 2x2x2 cells; beyond that cells are 4x4x4. Set by QualityGovernor
+    private static int fullDetailRadius = 24;
+    private static int halfDetailRadius = 64;
+    private static int detailVersion = 0;
+
+    private final Long2ObjectOpenHashMap<Section> sections = new Long2ObjectOpenHashMap<>();
+    private final LongLinkedOpenHashSet dirty = new LongLinkedOpenHashSet();
+    private final Long2ObjectOpenHashMap<MeshJob> inFlight = new Long2ObjectOpenHashMap<>();
+    private final ConcurrentLinkedQueue<MeshJob> finished = new ConcurrentLinkedQueue<>();
+    // Log totals once a full rebuild settles, so mesh modes can be compared on the same scan
+    private boolean reportWhenSettled = false;
+    private int lastDrawnSections = 0;
+    private long version = 0; // bumped whenever the set of drawn meshes changes
+    private boolean resortsPending = false;
+    private final List<Section> visible = new ArrayList<>(); // scratch for draw
+    private long lastOriginColumn = Long.MIN_VALUE; // origin section x/z the LOD tiers were chosen for
+    private int lastDetailVersion = -1; // detail radii the LOD tiers were chosen with
+    private long uploadedBytes = 0; // vertex bytes sent to the GPU since takeUploadedBytes
+
+    public void markDirty(long section) {
+        dirty.add(section);
+    }
+
+    /**
+     * Queues every section of the volume for a rebuild, nearest to the origin first, cancels
+     * builds of the previous scan and drops sections the volume no longer covers.
+     */
+    public void markAllDirty(VoxelVolume volume, BlockPos origin) {
+        int minSx = volume.minX() >> 4, maxSx = (volume.minX() + volume.sizeX() - 1) >> 4;
+        int minSy = volume.minY() >> 4, maxSy = (volume.minY() + volume.sizeY() - 1) >> 4;
+        int minSz = volume.minZ() >> 4, maxSz = (volume.minZ() + volume.sizeZ() - 1) >> 4;
+
+        cancelAll();
+        reportWhenSettled = true;
+        for (var it = sections.long2ObjectEntrySet().fastIterator(); it.hasNext(); ) {
+            var entry = it.next();
+            long section = entry.getLongKey();
+            int sx = ChunkSectionPos.unpackX(section);
+            int sy = ChunkSectionPos.unpackY(section);
+            int sz = ChunkSectionPos.unpackZ(section);
+            if (sx < minSx || sx > maxSx || sy < minSy || sy > maxSy || sz < minSz || sz > maxSz) {
+                entry.getValue().close();
+                it.remove();
+            }
+        }
+
+        var queue = new LongArrayList();
+        for (int sx = minSx; sx <= maxSx; sx++) {
+            for (int sy = minSy; sy <= maxSy; sy++) {
+                for (int sz = minSz; sz <= maxSz; sz++) {
+                    queue.add(ChunkSectionPos.asLong(sx, sy, sz));
+                }
+            }
+        }
+        int ox = origin.getX() >> 4, oy = origin.getY() >> 4, oz = origin.getZ() >> 4;
+        queue.sort((a, b) -> Integer.compare(distance(a, ox, oy, oz), distance(b, ox, oy, oz)));
+
+        dirty.clear();
+        for (int i = 0; i < queue.size(); i++) {
+            dirty.add(queue.getLong(i));
+        }
+    }
+
+    /** Pulls pending changes from {@link MinimapData3D} into the dirty queue. */
+    public void collectChanges(MinimapData3D data) {
+        if (data.isMeshDirty()) {
+            markAllDirty(data.volume(), data.origin());
+            data.markMeshClean();
+        } else {
+            for (long section : data.drainDirtyRegions()) {
+                markDirty(section);
+            }
+        }
+    }
+
+    /**
+     * Swaps in finished meshes, then dispatches dirty sections within this frame's budget.
+     * Returns how many sections were dispatched.
+     */
+    public int update(MinimapData3D data) {
+        BlockPos origin = data.origin();
+        MeshJob job;
+        while ((job = finished.poll()) != null) {
+            if (inFlight.get(job.section) != job) continue; // superseded or cancelled
+            inFlight.remove(job.section);
+            if (job.snapshot.lodStep != lodStep(job.section, origin)) {
+                markDirty(job.section); // the player moved while it was building; show it anyway
+            }
+            if (job.result == null) continue; // failed; keep the previous mesh
+            if (job.result.isEmpty()) {
+                removeSection(job.section);
+            } else {
+                putSection(job.section, job.result);
+            }
+        }
+
+        long originColumn = ChunkSectionPos.asLong(origin.getX() >> 4, 0, origin.getZ() >> 4);
+        if (originColumn != lastOriginColumn || detailVersion != lastDetailVersion) {
+            lastOriginColumn = originColumn;
+            lastDetailVersion = detailVersion;
+            for (var entry : sections.long2ObjectEntrySet()) {
+                if (entry.getValue().mesh.lodStep != lodStep(entry.getLongKey(), origin)) {
+                    markDirty(entry.getLongKey());
+                }
+            }
+        }
+
+        VoxelVolume volume = data.volume();
+        if (volume == null || dirty.isEmpty()) {
+            if (reportWhenSettled && inFlight.isEmpty()) report();
+            return 0;
+        }
+
+        long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+        var palette = SectionSnapshot.resolvePalette(volume);
+        int dispatched = 0;
+        while (!dirty.isEmpty() && dispatched < MAX_DISPATCH_PER_FRAME && inFlight.size() < MAX_IN_FLIGHT) {
+            long section = dirty.removeFirstLong();
+            MeshJob previous = inFlight.remove(section);
+            if (previous != null) previous.cancelled = true;
+
+            var snapshot = SectionSnapshot.capture(volume, palette, ChunkSectionPos.unpackX(section) << 4,
+                    ChunkSectionPos.unpackY(section) << 4, ChunkSectionPos.unpackZ(section) << 4,
+                    lodStep(section, origin));
+            if (snapshot.isEmpty()) {
+                removeSection(section); // e.g. the window slid past it
+            } else {
+                var next = new MeshJob(section, snapshot);
+                inFlight.put(section, next);
+                WORKERS.execute(next);
+            }
+            dispatched++;
+            if (System.nanoTime() >= deadline) break; // always make progress, then respect the budget
+        }
+        return dispatched;
+    }
+
+    public int pendingRebuilds() {
+        return dirty.size() + inFlight.size();
+    }
+
+    /**
+     * Draws the sections that overlap the viewport, skipping face directions outside
+     * {@code faceMask}. {@code modelView} maps origin-relative block coordinates (already scaled
+     * for the minimap) to view space; each section adds its own offset on top. {@code screen}
+     * maps the same coordinates to GUI pixels and is what the viewport rectangle is tested in.
+     *
+     * Opaque and cutout quads go first without blending; translucent quads follow blended and
+     * without depth writes, sections farthest from the camera first. A section re-sorts its
+     * translucent quads along {@code toCamera} only when {@code sortBucket} or the face mask
+     * changed, at most {@link #MAX_RESORTS_PER_FRAME} per frame. Blending uses the caller's
+     * blend function.
+     */
+    public void draw(Matrix4f modelView, Matrix4f projection, ShaderProgram texturedProgram,
+                     ShaderProgram lodProgram, BlockPos origin,
+                     Matrix4f screen, int viewX, int viewY, int viewSize, int faceMask,
+                     int sortBucket, Vector3f toCamera) {
+        var sectionModelView = new Matrix4f();
+        var boundsMin = new Vector3f();
+        var boundsMax = new Vector3f();
+        visible.clear();
+        for (Section section : sections.values()) {
+            var mesh = section.mesh;
+            float offsetX = mesh.originX - origin.getX();
+            float offsetY = mesh.originY - origin.getY();
+            float offsetZ = mesh.originZ - origin.getZ();
+
+            // Screen-space bounds of the mesh AABB; every transform involved is affine
+            screen.transformAab(mesh.minX() + offsetX, mesh.minY() + offsetY, mesh.minZ() + offsetZ,
+                    mesh.maxX() + offsetX, mesh.maxY() + offsetY, mesh.maxZ() + offsetZ, boundsMin, boundsMax);
+            if (boundsMax.x < viewX || boundsMin.x > viewX + viewSize
+                    || boundsMax.y < viewY || boundsMin.y > viewY + viewSize) {
+                continue;
+            }
+            visible.add(section);
+        }
+
+        RenderSystem.disableBlend();
+        for (Section section : visible) {
+            var mesh = section.mesh;
+            sectionModelView.set(modelView).translate(mesh.originX - origin.getX(),
+                    mesh.originY - origin.getY(), mesh.originZ - origin.getZ());
+            ShaderProgram program = mesh.isTextured() ? texturedProgram : lodProgram;
+            for (int group = 0; group < section.buffers.length; group++) {
+                PackedVertexBuffer buffer = section.buffers[group];
+                if (buffer == null || (faceMask & (1 << group % 6)) == 0) continue;
+                buffer.draw(sectionModelView, projection, program);
+            }
+        }
+
+        visible.sort(Comparator.comparingDouble(section -> depth(section.mesh, origin, toCamera)));
+        RenderSystem.enableBlend();
+        RenderSystem.depthMask(false);
+        int sortKey = sortBucket << 6 | faceMask;
+        int resorts = 0;
+        resortsPending = false;
+        for (Section section : visible) {
+            var mesh = section.mesh;
+            if (!mesh.hasTranslucent()) continue;
+            if (section.sortKey != sortKey) {
+                if (section.sortKey == -1 || resorts < MAX_RESORTS_PER_FRAME) {
+                    uploadedBytes += section.sortTranslucent(faceMask, toCamera, sortKey);
+                    resorts++;
+                } else {
+                    resortsPending = true;
+                }
+            }
+            if (section.translucentQuads == 0) continue;
+
+            sectionModelView.set(modelView).translate(mesh.originX - origin.getX(),
+                    mesh.originY - origin.getY(), mesh.originZ - origin.getZ());
+            section.translucent.draw(sectionModelView, projection,
+                    mesh.isTextured() ? texturedProgram : lodProgram);
+        }
+        RenderSystem.depthMask(true);
+        PackedVertexBuffer.unbind();
+        lastDrawnSections = visible.size();
+    }
+
+    /** Sections that passed the viewport test in the last {@link #draw}. */
+    public int lastDrawnSections() {
+        return lastDrawnSections;
+    }
+
+    /** Changes whenever a section mesh is swapped in or dropped, so callers can tell a stale picture. */
+    public long version() {
+        return version;
+    }
+
+    /** Whether the last {@link #draw} left translucent sections in an older sort order. */
+    public boolean hasPendingResorts() {
+        return resortsPending;
+    }
+
+    public int sectionCount() {
+        return sections.size();
+    }
+
+    /** Vertex bytes emitted and uploaded since the last call. */
+    public long takeUploadedBytes() {
+        long bytes = uploadedBytes;
+        uploadedBytes = 0;
+        return bytes;
+    }
+
+    public void clear() {
+        cancelAll();
+        for (Section section : sections.values()) {
+            section.close();
+        }
+        sections.clear();
+        dirty.clear();
+        version++;
+    }
+
+    private void putSection(long key, BlockMeshBuilder3D.BlockMesh mesh) {
+        Section section = Section.upload(mesh);
+        uploadedBytes += section.uploadedBytes;
+        Section previous = sections.put(key, section);
+        if (previous != null) previous.close();
+        version++;
+    }
+
+    private void removeSection(long key) {
+        Section previous = sections.remove(key);
+        if (previous != null) {
+            previous.close();
+            version++;
+        }
+    }
+
+    private void report() {
+        reportWhenSettled = false;
+        long quads = 0, vertices = 0, bytes = 0;
+        for (Section section : sections.values()) {
+            quads += section.quads;
+            vertices += section.vertices;
+            bytes += section.bytes;
+        }
+        HoloMapMod.LOGGER.info("[HoloMap] {} mesh: {} quads, {} vertices, {} KB in {} sections",
+                BlockMeshBuilder3D.mode(), quads, vertices, bytes / 1024, sections.size());
+    }
+
+    private void cancelAll() {
+        for (MeshJob job : inFlight.values()) {
+            job.cancelled = true;
+        }
+        inFlight.clear();
+    }
+
+    /** Changes the LOD tier distances; sections whose tier changed are rebuilt on the next update. */
+    public static void setDetailRadii(int fullDetail, int halfDetail) {
+        if (fullDetail == fullDetailRadius && halfDetail == halfDetailRadius) return;
+        fullDetailRadius = fullDetail;
+        halfDetailRadius = Math.max(fullDetail, halfDetail);
+        detailVersion++;
+    }
+
+    /** Mesh cell size for a section: 1 near the player, 2 or 4 farther out. */
+    static int lodStep(long section, BlockPos origin) {
+        int minX = ChunkSectionPos.unpackX(section) << 4;
+        int minZ = ChunkSectionPos.unpackZ(section) << 4;
+        int dx = Math.max(0, Math.max(minX - origin.getX(), origin.getX() - (minX + 15)));
+        int dz = Math.max(0, Math.max(minZ - origin.getZ(), origin.getZ() - (minZ + 15)));
+        int distance = Math.max(dx, dz);
+        if (distance <= fullDetailRadius) return 1;
+        return distance <= halfDetailRadius ? 2 : 4;
+    }
+
+    private static int distance(long section, int ox, int oy, int oz) {
+        return Math.abs(ChunkSectionPos.unpackX(section) - ox)
+                + Math.abs(ChunkSectionPos.unpackY(section) - oy)
+                + Math.abs(ChunkSectionPos.unpackZ(section) - oz);
+    }
+
+    private static ThreadFactory workerFactory() {
+        var counter = new AtomicInteger();
+        return task -> {
+            var thread = new Thread(task, "HoloMap Mesh Worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+    }
+
+    /** Distance of the section centre along {@code toCamera}; smaller is farther from the camera. */
+    private static double depth(BlockMeshBuilder3D.BlockMesh mesh, BlockPos origin, Vector3f toCamera) {
+        return (mesh.originX + 8 - origin.getX()) * toCamera.x
+                + (mesh.originY + 8 - origin.getY()) * toCamera.y
+                + (mesh.originZ + 8 - origin.getZ()) * toCamera.z;
+    }
+
+    /**
+     * A finished mesh with one GPU buffer per opaque and cutout face direction (null where it
+     * has no quads), plus one buffer holding its translucent quads in the last sorted order.
+     * Once uploaded only the translucent quads stay in memory, for re-sorting; the rest of the
+     * vertex data lives on the GPU alone.
+     */
+    private static final class Section {
+        private static final BlockMeshBuilder3D.Layer[] UNSORTED_LAYERS = {
+                BlockMeshBuilder3D.Layer.OPAQUE, BlockMeshBuilder3D.Layer.CUTOUT};
+
+        final BlockMeshBuilder3D.BlockMesh mesh; // translucent part, see BlockMesh#translucentPart
+        final int quads, vertices, bytes; // of the whole mesh, for the settle report
+        final PackedVertexBuffer[] buffers = new PackedVertexBuffer[2 * 6]; // Layer.ordinal() * 6 + face
+        PackedVertexBuffer translucent;
+        int translucentQuads;
+        int sortKey = -1; // sort bucket and face mask the translucent buffer was built for
+        long uploadedBytes; // by upload
+        private static ByteBuffer sorted = ByteBuffer.allocateDirect(0); // scratch for sortTranslucent
+
+        private Section(BlockMeshBuilder3D.BlockMesh mesh) {
+            this.mesh = mesh.translucentPart();
+            this.quads = mesh.quadCount();
+            this.vertices = mesh.vertexCount();
+            this.bytes = mesh.byteSize();
+        }
+
+        static Section upload(BlockMeshBuilder3D.BlockMesh mesh) {
+            var section = new Section(mesh);
+            for (var layer : UNSORTED_LAYERS) {
+                for (int face = 0; face < 6; face++) {
+                    ByteBuffer vertices = mesh.vertices(layer, face);
+                    if (!vertices.hasRemaining()) continue;
+
+                    var buffer = new PackedVertexBuffer(false);
+                    buffer.upload(vertices);
+                    section.uploadedBytes += vertices.remaining();
+                    section.buffers[layer.ordinal() * 6 + face] = buffer;
+                }
+            }
+            PackedVertexBuffer.unbind();
+            return section;
+        }
+
+        /** Re-uploads the translucent quads in back-to-front order; returns the bytes uploaded. */
+        long sortTranslucent(int faceMask, Vector3f toCamera, int key) {
+            sortKey = key;
+            if (sorted.capacity() < mesh.byteSize()) {
+                sorted = ByteBuffer.allocateDirect(Math.max(mesh.byteSize(), 2 * sorted.capacity()));
+            }
+            sorted.clear();
+            translucentQuads = mesh.sortTranslucent(sorted, faceMask, toCamera.x, toCamera.y, toCamera.z);
+            if (translucentQuads == 0) return 0;
+
+            if (translucent == null) translucent = new PackedVertexBuffer(true);
+            translucent.upload(sorted.flip());
+            return sorted.remaining();
+        }
+
+        void close() {
+            for (PackedVertexBuffer buffer : buffers) {
+                if (buffer != null) buffer.close();
+            }
+            if (translucent != null) translucent.close();
+        }
+    }
+
+    private final class MeshJob implements Runnable {
+        final long section;
+        final SectionSnapshot snapshot;
+        volatile boolean cancelled;
+        volatile BlockMeshBuilder3D.BlockMesh result;
+
+        MeshJob(long section, SectionSnapshot snapshot) {
+            this.section = section;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+            var event = new HoloMapEvents.MeshBuild();
+            event.begin();
+            boolean measure = HoloMapMetrics.enabled();
+            long startNanos = measure ? System.nanoTime() : 0;
+            try {
+                result = BlockMeshBuilder3D.buildSection(snapshot, () -> cancelled);
+            } catch (RuntimeException e) {
+                HoloMapMod.LOGGER.error("Mesh build failed for section {}", section, e);
+            }
+
+            BlockMeshBuilder3D.BlockMesh mesh = result;
+            if (mesh != null && measure) {
+                HoloMapMetrics.record(HoloMapMetrics.Timer.MESH_BUILD, System.nanoTime() - startNanos);
+                HoloMapMetrics.add(HoloMapMetrics.Counter.MESH_QUADS, mesh.quadCount());
+                HoloMapMetrics.add(HoloMapMetrics.Counter.MESH_VERTICES, mesh.vertexCount());
+            }
+            if (mesh != null && event.shouldCommit()) {
+                event.section = section;
+                event.lodStep = snapshot.lodStep;
+                event.quads = mesh.quadCount();
+                event.vertices = mesh.vertexCount();
+                event.bytes = mesh.byteSize();
+                event.commit();
+            }
+            if (!cancelled) finished.add(this);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.holomap.render;
+
+import com.holomap.cache.ChunkSummary;
+import com.holomap.cache.RegionCache;
+import com.mojang.blaze3d.systems.RenderSystem;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.MapColor;
+import net.minecraft.client.render.BufferRenderer;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.texture.NativeImageBackedTexture;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.EmptyBlockView;
+import net.minecraft.world.World;
+import org.joml.Matrix4f;
+
+/**
+ * Top-down map tiles for the zoomed-out view, kept as a pyramid of texture pages.
+ *
+ * Every chunk column becomes a 16x16 tile: the map colour of each column's topmost cell, shaded
+ * by the height step to the column north of it like vanilla maps. Level {@code L} of the pyramid
+ * has {@code 2^L} blocks per pixel and a tile is box-filtered down into every level, so one
+ * {@link #PAGE_SIZE} pixel page covers 256 to 2048 blocks and even the widest view is a few
+ * textured quads.
+ *
+ * Tiles come from {@link RegionCache}: summaries stored from scans arrive through its store
+ * listener, and a new page has the {@link #LOADER} thread read every summary it covers from
+ * disk. Pages are only a cache of those: they are created when a view needs them, at most
+ * {@link #MAX_PAGES} are kept (least recently drawn evicted), and an evicted page needed again
+ * is loaded again. Tiles are written and pages uploaded on the render thread within a per-frame
+ * budget, and {@link #release} frees everything when the view closes. Render thread only,
+ * except the store listener and the loader.
+ */
+public final class TilePyramid {
+    private static final TilePyramid INSTANCE = new TilePyramid();
+
+    private static final int LEVELS = 4; // 1, 2, 4 and 8 blocks per pixel
+    private static final int PAGE_SIZE = 256; // pixels
+    private static final int MAX_PAGES = 64;
+    private static final int MAX_UPLOADS_PER_FRAME = 4;
+    private static final long APPLY_BUDGET_NANOS = 1_000_000L; // 1 ms
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "HoloMap Tile Loader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private record PageKey(int level, int x, int z) {}
+
+    /** One chunk's colours, {@code z * 16 + x}, in NativeImage's ABGR; 0 where nothing is known. */
+    private record Tile(int generation, int chunkX, int chunkZ, int[] colors) {}
+
+    private static final class Page {
+        final NativeImageBackedTexture texture =
+                new NativeImageBackedTexture(new NativeImage(PAGE_SIZE, PAGE_SIZE, true));
+        boolean dirty = false;
+        boolean uploaded = false;
+        long lastDrawn = 0;
+        volatile boolean evicted = false;
+    }
+
+    private final Map<PageKey, Page> pages = new HashMap<>();
+    private final ConcurrentLinkedQueue<Tile> incoming = new ConcurrentLinkedQueue<>();
+    // Tiles and loads from before the last release are dropped
+    private volatile int generation = 0;
+    private volatile boolean active = false;
+    private volatile World world = null;
+    private long frame = 0;
+
+    private TilePyramid() {}
+
+    public static TilePyramid get() {
+        return INSTANCE;
+    }
+
+    public static void register() {
+        RegionCache.get().setStoreListener(INSTANCE::offer);
+    }
+
+    /** Applies arrived tiles and uploads changed pages, within this frame's budget. */
+    public void update(World world) {
+        if (world != this.world) {
+            release();
+            this.world = world;
+        }
+        active = true;
+
+        long deadline = System.nanoTime() + APPLY_BUDGET_NANOS;
+        Tile tile;
+        while (System.nanoTime() < deadline && (tile = incoming.poll()) != null) {
+            if (tile.generation == generation) apply(tile);
+        }
+
+        int uploads = 0;
+        for (Page page : pages.values()) {
+            if (!page.dirty) continue;
+            page.texture.upload();
+            page.dirty = false;
+            page.uploaded = true;
+            if (++uploads == MAX_UPLOADS_PER_FRAME) break;
+        }
+    }
+
+    /**
+     * Draws the {@code span} blocks wide square centred on ({@code centerX}, {@code centerZ}) over
+     * the GUI square at ({@code x}, {@code y}), {@code size} wide and {@code pixels} physical
+     * pixels across, from the coarsest level whose pixels are no larger than a screen pixel.
+     * Pages not loaded yet are created and left out until their first upload.
+     */
+    public void draw(Matrix4f matrix, int x, int y, int size, int pixels, double centerX, double centerZ, int span) {
+        frame++;
+        int blocksPerPixel = Math.max(1, span / Math.max(1, pixels));
+        int level = Math.min(LEVELS - 1, 31 - Integer.numberOfLeadingZeros(blocksPerPixel));
+        int pageBlocks = PAGE_SIZE << level;
+        double minX = centerX - span / 2.0, minZ = centerZ - span / 2.0;
+
+        RenderSystem.setShader(GameRenderer::getPositionTexProgram);
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+        for (int pageX = Math.floorDiv((int) Math.floor(minX), pageBlocks);
+             pageX <= Math.floorDiv((int) Math.floor(minX + span), pageBlocks); pageX++) {
+            for (int pageZ = Math.floorDiv((int) Math.floor(minZ), pageBlocks);
+                 pageZ <= Math.floorDiv((int) Math.floor(minZ + span), pageBlocks); pageZ++) {
+                Page page = page(level, pageX, pageZ);
+                page.lastDrawn = frame;
+                if (!page.uploaded) continue;
+
+                // The part of the page inside the view, in blocks
+                double x0 = Math.max(minX, (double) pageX * pageBlocks);
+                double x1 = Math.min(minX + span, (double) (pageX + 1) * pageBlocks);
+                double z0 = Math.max(minZ, (double) pageZ * pageBlocks);
+                double z1 = Math.min(minZ + span, (double) (pageZ + 1) * pageBlocks);
+                if (x1 <= x0 || z1 <= z0) continue;
+
+                float left = x + (float) ((x0 - minX) / span * size);
+                float right = x + (float) ((x1 - minX) / span * size);
+                float top = y + (float) ((z0 - minZ) / span * size);
+                float bottom = y + (float) ((z1 - minZ) / span * size);
+                float u0 = (float) ((x0 - (double) pageX * pageBlocks) / pageBlocks);
+                float u1 = (float) ((x1 - (double) pageX * pageBlocks) / pageBlocks);
+                float v0 = (float) ((z0 - (double) pageZ * pageBlocks) / pageBlocks);
+                float v1 = (float) ((z1 - (double) pageZ * pageBlocks) / pageBlocks);
+
+                RenderSystem.setShaderTexture(0, page.texture.getGlId());
+                var buffer = Tessellator.getInstance().begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_TEXTURE);
+                buffer.vertex(matrix, left, top, 0).texture(u0, v0);
+                buffer.vertex(matrix, left, bottom, 0).texture(u0, v1);
+                buffer.vertex(matrix, right, bottom, 0).texture(u1, v1);
+                buffer.vertex(matrix, right, top, 0).texture(u1, v0);
+                BufferRenderer.drawWithGlobalProgram(buffer.end());
+            }
+        }
+        RenderSystem.disableBlend();
+    }
+
+    /** Frees every page and drops pending tiles and loads. */
+    public void release() {
+        active = false;
+        generation++;
+        for (Page page : pages.values()) {
+            page.evicted = true;
+            page.texture.close();
+        }
+        pages.clear();
+        incoming.clear();
+    }
+
+    public int pageCount() {
+        return pages.size();
+    }
+
+    /** Store listener: turns a freshly scanned chunk into a tile while the view is open. */
+    private void offer(World world, ChunkSummary summary) {
+        if (active && world == this.world) incoming.add(tile(generation, summary));
+    }
+
+    private Page page(int level, int pageX, int pageZ) {
+        var key = new PageKey(level, pageX, pageZ);
+        Page page = pages.get(key);
+        if (page != null) return page;
+
+        if (pages.size() >= MAX_PAGES) evictLeastRecentlyDrawn();
+        page = new Page();
+        pages.put(key, page);
+        load(page, level, pageX, pageZ);
+        return page;
+    }
+
+    private void evictLeastRecentlyDrawn() {
+        PageKey oldest = null;
+        long oldestFrame = Long.MAX_VALUE;
+        for (var entry : pages.entrySet()) {
+            if (entry.getValue().lastDrawn < oldestFrame) {
+                oldest = entry.getKey();
+                oldestFrame = entry.getValue().lastDrawn;
+            }
+        }
+        Page page = pages.remove(oldest);
+        page.evicted = true;
+        page.texture.close();
+    }
+
+    /** Has the loader queue a tile for every cached chunk summary the page covers. */
+    private void load(Page page, int level, int pageX, int pageZ) {
+        World world = this.world;
+        int loadGeneration = generation;
+        int chunks = (PAGE_SIZE << level) >> 4;
+        int minChunkX = pageX * chunks, minChunkZ = pageZ * chunks;
+        LOADER.execute(() -> {
+            for (int cx = minChunkX; cx < minChunkX + chunks; cx++) {
+                for (int cz = minChunkZ; cz < minChunkZ + chunks; cz++) {
+                    if (page.evicted || loadGeneration != generation) return;
+                    ChunkSummary summary = RegionCache.get().load(world, cx, cz);
+                    if (summary != null) incoming.add(tile(loadGeneration, summary));
+                }
+            }
+        });
+    }
+
+    /** Writes the tile into every page covering its chunk, box-filtered to each page's level. */
+    private void apply(Tile tile) {
+        for (int level = 0; level < LEVELS; level++) {
+            int size = 16 >> level, step = 1 << level;
+            int pixelX = (tile.chunkX * 16) >> level, pixelZ = (tile.chunkZ * 16) >> level;
+            int pageX = Math.floorDiv(pixelX, PAGE_SIZE), pageZ = Math.floorDiv(pixelZ, PAGE_SIZE);
+            Page page = pages.get(new PageKey(level, pageX, pageZ));
+            if (page == null) continue;
+
+            NativeImage image = page.texture.getImage();
+            int baseX = pixelX - pageX * PAGE_SIZE, baseZ = pixelZ - pageZ * PAGE_SIZE;
+            for (int px = 0; px < size; px++) {
+                for (int pz = 0; pz < size; pz++) {
+                    image.setColor(baseX + px, baseZ + pz, average(tile.colors, px * step, pz * step, step));
+                }
+            }
+            page.dirty = true;
+        }
+    }
+
+    /** Mean of the known colours in the {@code step} square at ({@code x}, {@code z}), or 0. */
+    private static int average(int[] colors, int x, int z, int step) {
+        if (step == 1) return colors[z * 16 + x];
+        int r = 0, g = 0, b = 0, count = 0;
+        for (int dz = 0; dz < step; dz++) {
+            for (int dx = 0; dx < step; dx++) {
+                int color = colors[(z + dz) * 16 + x + dx];
+                if (color == 0) continue;
+                r += color & 0xFF;
+                g += (color >> 8) & 0xFF;
+                b += (color >> 16) & 0xFF;
+                count++;
+            }
+        }
+        if (count == 0) return 0;
+        return 0xFF000000 | (b / count) << 16 | (g / count) << 8 | r / count;
+    }
+
+    /** Colours of a summary's columns; thread-safe, map colours need no model lookups. */
+    private static Tile tile(int generation, ChunkSummary summary) {
+        int[] colors = new int[256];
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                BlockState state = summary.topState(x, z);
+                if (state == null) continue;
+                MapColor mapColor = state.getMapColor(EmptyBlockView.INSTANCE, BlockPos.ORIGIN);
+                if (mapColor == MapColor.CLEAR) continue;
+
+                int height = summary.height(x, z);
+                int north = z > 0 ? summary.height(x, z - 1) : ChunkSummary.NO_HEIGHT;
+                MapColor.Brightness brightness = MapColor.Brightness.NORMAL;
+                if (north != ChunkSummary.NO_HEIGHT && state.getFluidState().isEmpty()) {
+                    if (height > north) brightness = MapColor.Brightness.HIGH;
+                    else if (height < north) brightness = MapColor.Brightness.LOW;
+                }
+                colors[z * 16 + x] = mapColor.getRenderColor(brightness);
+            }
+        }
+        return new Tile(generation, summary.chunkX(), summary.chunkZ(), colors);
+    }
+}
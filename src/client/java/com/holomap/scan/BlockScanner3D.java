@@ -1,111 +1,217 @@
 package com.holomap.scan;
 
 import com.holomap.HoloMapMod;
-import com.holomap.map.MinimapData3D;
+import com.holomap.cache.RegionCache;
+import com.holomap.debug.HoloMapEvents;
+import com.holomap.debug.HoloMapMetrics;
+import com.holomap.map.VoxelVolume;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import net.minecraft.block.BlockState;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.World;
 
 public final class BlockScanner3D {
+    /**
+     * How full scans pick the cells they record. BAND keeps a fixed band under each column's
+     * surface, buried blocks included, and runs in parallel tiles through the section cache;
+     * FLOOD records only the blocks bordering open space reachable from the sky or the player
+     * (see {@link SurfaceExtractor}), on one thread and without the cache.
+     */
+    public enum ScanMode { BAND, FLOOD }
+
+    static final int AIR_DEPTH = 3; // air is only recorded this far below the surface
+    // Far terrain is meshed at reduced detail, so the map can cover up to 256 blocks across
+    private static final int MAX_HORIZONTAL_RADIUS = 128;
+    private static final int TILE_SIZE = 32; // columns per tile side, two chunks
+    private static final ForkJoinPool TILE_POOL = tilePool();
+
+    private static volatile ScanMode mode = ScanMode.BAND;
+
     private BlockScanner3D() {}
 
+    public static ScanMode mode() { return mode; }
+    public static void setMode(ScanMode newMode) { mode = newMode; }
+
     public static void scanAroundPlayerAsync(
             net.minecraft.entity.player.PlayerEntity player, int horizontalRadius, int verticalRange) {
         if (player == null || player.getWorld() == null) return;
 
         final var world = player.getWorld();
         final var origin = player.getBlockPos();
-        final int hr = MathHelper.clamp(horizontalRadius, 8, 32); // Smaller for performance
+        final int hr = MathHelper.clamp(horizontalRadius, 8, MAX_HORIZONTAL_RADIUS);
         final int vr = MathHelper.clamp(verticalRange, 8, 32);
+        final boolean caveLayer = SurfaceResolver.useCaveLayer(world, origin);
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                var data = scan3DTerrain(world, origin, hr, vr);
-                MinecraftClient.getInstance().execute(() ->
-                        MinimapData3D.get().setScanResult(origin, hr, vr, data));
-            } catch (Exception e) {
-                HoloMapMod.LOGGER.error("3D Scan failed", e);
-            }
-        });
-    }
-
-    public static class Block3DData {
-        public final BlockState state;
-        public final BlockPos pos;
-        public final boolean[] visibleFaces; // [down, up, north, south, west, east]
-
-        public Block3DData(BlockState state, BlockPos pos, boolean[] visibleFaces) {
-            this.state = state;
-            this.pos = pos;
-            this.visibleFaces = visibleFaces;
-        }
+        ScanScheduler.get().request(world, origin, hr, vr, caveLayer, mode);
     }
 
-    private static Block3DData[][][] scan3DTerrain(World world, BlockPos origin, int hr, int vr) {
+    /**
+     * Runs one full scan; returns {@code null} if {@code cancelled} turned true along the way.
+     * Called on a scan worker: the chunk data is captured on the client thread first, then
+     * {@link #TILE_SIZE} column tiles are scanned in parallel on the tile pool.
+     */
+    static VoxelVolume scan3DTerrain(World world, BlockPos origin, int hr, int vr, boolean caveLayer,
+                                     ScanMode scanMode, BooleanSupplier cancelled) throws InterruptedException, ExecutionException {
+        var event = new HoloMapEvents.Scan();
+        event.begin();
+        long startNanos = System.nanoTime();
         int size = 2 * hr + 1;
-        int height = vr;
-        Block3DData[][][] blocks = new Block3DData[size][height][size];
 
         // Start from surface and go down
         int yStart = origin.getY() + 5; // Start above player
         int yEnd = Math.max(world.getBottomY(), origin.getY() - vr + 5);
-
-        for (int dx = -hr; dx <= hr; dx++) {
-            for (int dz = -hr; dz <= hr; dz++) {
-                // Find surface level first
-                int surfaceY = findSurfaceLevel(world, origin.getX() + dx, origin.getZ() + dz, yStart, yEnd);
-
-                // Scan from surface down to limited depth
-                int scanDepth = Math.min(vr, 16); // Limit depth for performance
-                for (int dy = 0; dy < scanDepth; dy++) {
-                    int y = surfaceY - dy;
-                    if (y < yEnd) break;
-
-                    BlockPos pos = new BlockPos(origin.getX() + dx, y, origin.getZ() + dz);
-                    BlockState state = world.getBlockState(pos);
-
-                    // Skip air blocks
-                    if (state.isAir()) {
-                        // But if we're at surface level and it's air, still record it
-                        if (dy > 3) continue; // Only skip air after going down a bit
-                    }
-
-                    boolean[] visibleFaces = calculateVisibleFaces(world, pos);
-                    blocks[dx + hr][dy][dz + hr] = new Block3DData(state, pos, visibleFaces);
+        int minX = origin.getX() - hr, minZ = origin.getZ() - hr;
+        int sizeY = yStart - yEnd + 1;
+
+        WorldSnapshot snapshot = CompletableFuture.supplyAsync(() -> WorldSnapshot.capture(world,
+                minX, yEnd, minZ, minX + size - 1, yStart, minZ + size - 1), MinecraftClient.getInstance()).join();
+        long capturedNanos = System.nanoTime();
+        if (cancelled.getAsBoolean()) return null;
+
+        int probeStart = caveLayer ? SurfaceResolver.caveProbeStart(origin) : yStart;
+        VoxelVolume volume = scanSnapshot(snapshot, minX, yEnd, minZ, size, sizeY, probeStart, caveLayer,
+                scanMode, scanDepth(vr), cancelled);
+        if (volume == null) return null;
+
+        // Chunks the client hasn't loaded come from the disk cache; freshly scanned ones go back into it
+        for (int cx = minX >> 4; cx <= (minX + size - 1) >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= (minZ + size - 1) >> 4; cz++) {
+                if (snapshot.isLoaded(cx, cz)) {
+                    RegionCache.get().store(world, volume, cx, cz, snapshot.stamp(cx, cz), false);
+                } else {
+                    RegionCache.get().fill(world, volume, cx, cz);
                 }
             }
         }
 
-        return blocks;
+        long endNanos = System.nanoTime();
+        HoloMapMetrics.record(HoloMapMetrics.Timer.SCAN, endNanos - startNanos);
+        if (event.shouldCommit()) {
+            event.radius = hr;
+            event.verticalRange = vr;
+            event.caveLayer = caveLayer;
+            event.tiles = tileCount(minX, minZ, size);
+            event.captureMicros = (capturedNanos - startNanos) / 1000;
+            event.commit();
+        }
+        HoloMapMod.LOGGER.debug("[HoloMap] 3D scan r={} cave={} took {} us (capture {} us, {} tiles), section cache: {}",
+                hr, caveLayer, (endNanos - startNanos) / 1000, (capturedNanos - startNanos) / 1000,
+                tileCount(minX, minZ, size), SectionResultCache.get());
+        return volume;
     }
 
-    private static int findSurfaceLevel(World world, int x, int z, int startY, int endY) {
-        // Find the first solid block from top down
-        for (int y = startY; y >= endY; y--) {
-            BlockState state = world.getBlockState(new BlockPos(x, y, z));
-            if (!state.isAir() && state.getFluidState().isEmpty()) {
-                return y;
+    /**
+     * Scans the {@code size} x {@code sizeY} x {@code size} box at (minX, minY, minZ) out of the
+     * snapshot: in FLOOD mode by surface extraction, otherwise (or when a cave-layer scan finds
+     * nothing to fill from) in parallel band tiles. Returns {@code null} if {@code cancelled}
+     * turned true.
+     */
+    static VoxelVolume scanSnapshot(WorldSnapshot snapshot, int minX, int minY, int minZ, int size, int sizeY,
+                                    int probeStart, boolean caveLayer, ScanMode scanMode, int scanDepth,
+                                    BooleanSupplier cancelled) throws InterruptedException, ExecutionException {
+        if (scanMode == ScanMode.FLOOD) {
+            var extractor = new SurfaceExtractor(snapshot, minX, minY, minZ, size, sizeY, size);
+            if (extractor.seed(caveLayer, minX + size / 2, probeStart, minZ + size / 2)) {
+                return extractSurface(extractor, minX, minY, minZ, size, sizeY, cancelled);
+            }
+        }
+
+        // Tiles are aligned to world coordinates so their sections line up with the section cache
+        var tiles = new ArrayList<Callable<VoxelVolume>>();
+        for (int tileX = Math.floorDiv(minX, TILE_SIZE) * TILE_SIZE; tileX < minX + size; tileX += TILE_SIZE) {
+            for (int tileZ = Math.floorDiv(minZ, TILE_SIZE) * TILE_SIZE; tileZ < minZ + size; tileZ += TILE_SIZE) {
+                int x0 = Math.max(minX, tileX), x1 = Math.min(minX + size, tileX + TILE_SIZE);
+                int z0 = Math.max(minZ, tileZ), z1 = Math.min(minZ + size, tileZ + TILE_SIZE);
+                tiles.add(() -> scanTile(snapshot, x0, minY, z0, x1 - x0, sizeY, z1 - z0,
+                        probeStart, caveLayer, scanDepth, cancelled));
             }
         }
-        return endY; // Fallback to bottom if no surface found
+
+        // Cells are indexed by world Y (minY..minY + sizeY - 1), so positions need no per-cell BlockPos
+        VoxelVolume volume = new VoxelVolume(minX, minY, minZ, size, sizeY, size);
+        for (Future<VoxelVolume> tile : TILE_POOL.invokeAll(tiles)) {
+            VoxelVolume tileVolume = tile.get();
+            if (tileVolume == null) return null;
+            volume.copyFrom(tileVolume);
+        }
+        return volume;
     }
 
-    private static boolean[] calculateVisibleFaces(World world, BlockPos pos) {
-        boolean[] faces = new boolean[6]; // down, up, north, south, west, east
+    /** Fills the seeded box and writes the cells bordering what it reached into a new volume. */
+    private static VoxelVolume extractSurface(SurfaceExtractor extractor, int minX, int minY, int minZ,
+                                              int size, int sizeY, BooleanSupplier cancelled) {
+        var event = new HoloMapEvents.ScanTile();
+        event.begin();
+        if (!extractor.fill(cancelled)) return null;
+
+        VoxelVolume volume = new VoxelVolume(minX, minY, minZ, size, sizeY, size);
+        extractor.writeTo(volume, null);
+
+        HoloMapMetrics.add(HoloMapMetrics.Counter.BLOCKS_VISITED, extractor.blocksVisited());
+        HoloMapMetrics.add(HoloMapMetrics.Counter.BLOCK_STATE_READS, extractor.stateReads());
+        if (event.shouldCommit()) {
+            event.columns = size * size;
+            event.blocksVisited = extractor.blocksVisited();
+            event.blockStateReads = extractor.stateReads();
+            event.commit();
+        }
+        return volume;
+    }
 
-        BlockPos[] neighbors = {
-                pos.down(), pos.up(), pos.north(), pos.south(), pos.west(), pos.east()
-        };
+    private static int tileCount(int minX, int minZ, int size) {
+        int tilesX = Math.floorDiv(minX + size - 1, TILE_SIZE) - Math.floorDiv(minX, TILE_SIZE) + 1;
+        int tilesZ = Math.floorDiv(minZ + size - 1, TILE_SIZE) - Math.floorDiv(minZ, TILE_SIZE) + 1;
+        return tilesX * tilesZ;
+    }
 
-        for (int i = 0; i < 6; i++) {
-            BlockState neighbor = world.getBlockState(neighbors[i]);
-            // Face is visible if neighbor is air or transparent
-            faces[i] = neighbor.isAir() || !neighbor.isOpaque();
+    /** Resolves surfaces and scans one tile of columns into a volume of its own. */
+    private static VoxelVolume scanTile(WorldSnapshot snapshot, int minX, int minY, int minZ,
+                                        int sizeX, int sizeY, int sizeZ, int probeStart, boolean caveLayer,
+                                        int scanDepth, BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) return null;
+        var event = new HoloMapEvents.ScanTile();
+        event.begin();
+        var tile = new VoxelVolume(minX, minY, minZ, sizeX, sizeY, sizeZ);
+        var scanner = new ChunkSectionScanner(snapshot);
+
+        // Find surface level first: heightmaps above ground, the player's own layer in caves
+        int[] surfaceY = new int[sizeX * sizeZ];
+        SurfaceResolver.resolve(scanner, minX, minZ, sizeX, sizeZ, probeStart, minY, caveLayer, surfaceY);
+
+        // Scan from surface down to limited depth, keeping air only a few blocks down
+        scanner.scanInto(tile, surfaceY, scanDepth, AIR_DEPTH);
+
+        HoloMapMetrics.add(HoloMapMetrics.Counter.BLOCKS_VISITED, scanner.blocksVisited());
+        HoloMapMetrics.add(HoloMapMetrics.Counter.BLOCK_STATE_READS, scanner.stateReads());
+        if (event.shouldCommit()) {
+            event.columns = sizeX * sizeZ;
+            event.blocksVisited = scanner.blocksVisited();
+            event.blockStateReads = scanner.stateReads();
+            event.commit();
         }
+        return tile;
+    }
+
+    /** Blocks scanned below the surface: half the vertical range, which the quality level sets. */
+    static int scanDepth(int vr) {
+        return Math.max(8, Math.min(vr / 2, 16));
+    }
 
-        return faces;
+    private static ForkJoinPool tilePool() {
+        var counter = new AtomicInteger();
+        return new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("HoloMap Scan Tile-" + counter.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }, null, false);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,280 @@
+package com.holomap.scan;
+
+import com.holomap.map.VoxelVolume;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.chunk.PalettedContainer;
+
+/**
+ * Scan engine that walks a box of the world one 16x16x16 chunk section at a time.
+ *
+ * Chunk data comes from a {@link WorldSnapshot}, so several scanners (one per thread) can share
+ * one immutable capture. Inside a section, states are unpacked from its {@link PalettedContainer}
+ * into a scratch array indexed {@code (y << 8) | (z << 4) | x}, so neighbour lookups are index
+ * offsets; only cells on a section border read from the adjacent section.
+ *
+ * Sections whose own chunk and four neighbouring chunks are loaded are processed whole and go
+ * through {@link SectionResultCache}, so a rescan only reprocesses sections that changed.
+ *
+ * Counts the cells it visits and the block states it reads, for {@link
+ * com.holomap.debug.HoloMapMetrics}; callers publish the totals once they are done.
+ *
+ * Not thread-safe: one instance per thread.
+ */
+final class ChunkSectionScanner {
+    static final int NO_HEIGHTMAP = WorldSnapshot.NO_HEIGHTMAP;
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+    private static final int SECTION_VOLUME = 16 * 16 * 16;
+    private static final int[] NEIGHBOR_OFFSETS = {-256, 256, -16, 16, -1, 1}; // Direction id order
+    private static final Direction[] DIRECTIONS = {Direction.DOWN, Direction.UP, Direction.NORTH,
+            Direction.SOUTH, Direction.WEST, Direction.EAST};
+
+    private final WorldSnapshot snapshot;
+    private final BlockState[] scratch = new BlockState[SECTION_VOLUME];
+    private long blocksVisited = 0;
+    private long stateReads = 0;
+
+    ChunkSectionScanner(WorldSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /** Single-state lookup for column probes and section borders. */
+    BlockState stateAt(int x, int y, int z) {
+        stateReads++;
+        PalettedContainer<BlockState> container = snapshot.container(x >> 4, y >> 4, z >> 4);
+        return container == null ? AIR : container.get(x & 15, y & 15, z & 15);
+    }
+
+    /** Y of the topmost non-air block from the chunk's WORLD_SURFACE heightmap, or {@link #NO_HEIGHTMAP}. */
+    int heightmapTop(int x, int z) {
+        return snapshot.surfaceTop(x, z);
+    }
+
+    long blocksVisited() {
+        return blocksVisited;
+    }
+
+    long stateReads() {
+        return stateReads;
+    }
+
+    int findSurfaceLevel(int x, int z, int startY, int endY) {
+        // Find the first solid block from top down
+        for (int y = startY; y >= endY; y--) {
+            BlockState state = stateAt(x, y, z);
+            if (!state.isAir() && state.getFluidState().isEmpty()) {
+                return y;
+            }
+        }
+        return endY; // Fallback to bottom if no surface found
+    }
+
+    /**
+     * Records every cell of {@code volume} whose column band contains it. {@code surfaceY} holds
+     * the surface per volume column ({@code x * sizeZ + z}); the band runs {@code scanDepth}
+     * blocks down from it, and air is only kept in its top {@code airDepth + 1} blocks.
+     */
+    void scanInto(VoxelVolume volume, int[] surfaceY, int scanDepth, int airDepth) {
+        scanInto(volume, surfaceY, scanDepth, airDepth, 0, 0, volume.sizeX(), volume.sizeZ());
+    }
+
+    /**
+     * Same as {@link #scanInto(VoxelVolume, int[], int, int)} restricted to the volume columns
+     * [colX, colX + sizeX) x [colZ, colZ + sizeZ); {@code surfaceY} is indexed per box column.
+     */
+    void scanInto(VoxelVolume volume, int[] surfaceY, int scanDepth, int airDepth,
+                  int colX, int colZ, int sizeX, int sizeZ) {
+        var band = new ColumnBand(volume.minX() + colX, volume.minZ() + colZ, sizeZ, surfaceY, scanDepth, airDepth);
+        int minX = band.minX, minZ = band.minZ;
+        int maxX = minX + sizeX - 1;
+        int maxY = volume.minY() + volume.sizeY() - 1;
+        int maxZ = minZ + sizeZ - 1;
+
+        for (int sx = minX >> 4; sx <= maxX >> 4; sx++) {
+            for (int sz = minZ >> 4; sz <= maxZ >> 4; sz++) {
+                int x0 = Math.max(minX, sx << 4), x1 = Math.min(maxX, (sx << 4) + 15);
+                int z0 = Math.max(minZ, sz << 4), z1 = Math.min(maxZ, (sz << 4) + 15);
+
+                // Vertical extent of all column bands inside this chunk footprint
+                int bandTop = Integer.MIN_VALUE, bandBottom = Integer.MAX_VALUE;
+                for (int x = x0; x <= x1; x++) {
+                    for (int z = z0; z <= z1; z++) {
+                        int surface = band.surface(x, z);
+                        bandTop = Math.max(bandTop, surface);
+                        bandBottom = Math.min(bandBottom, surface - scanDepth + 1);
+                    }
+                }
+                bandTop = Math.min(bandTop, maxY);
+                bandBottom = Math.max(bandBottom, volume.minY());
+
+                for (int sy = bandBottom >> 4; sy <= bandTop >> 4; sy++) {
+                    scanSection(volume, band, sx, sy, sz,
+                            x0, x1, Math.max(bandBottom, sy << 4), Math.min(bandTop, (sy << 4) + 15), z0, z1);
+                }
+            }
+        }
+    }
+
+    /** Surface lookup for the box of columns being scanned, in world coordinates. */
+    private record ColumnBand(int minX, int minZ, int sizeZ, int[] surfaceY, int scanDepth, int airDepth) {
+        int surface(int x, int z) {
+            return surfaceY[(x - minX) * sizeZ + (z - minZ)];
+        }
+    }
+
+    private void scanSection(VoxelVolume volume, ColumnBand band,
+                             int sx, int sy, int sz,
+                             int x0, int x1, int y0, int y1, int z0, int z1) {
+        if (isCacheable(sx, sz)) {
+            var cache = SectionResultCache.get();
+            SectionResultCache.Section section = cache.get(sx, sy, sz);
+            if (section == null) {
+                section = processSection(sx, sy, sz);
+                cache.put(sx, sy, sz, snapshot.cacheStamp, section);
+            }
+            copySection(volume, band, section, sx, sy, sz, x0, x1, y0, y1, z0, z1);
+            return;
+        }
+
+        int minX = volume.minX(), minY = volume.minY(), minZ = volume.minZ();
+        int baseX = sx << 4, baseY = sy << 4, baseZ = sz << 4;
+
+        // Only the box being scanned plus its in-section neighbours needs unpacking
+        unpack(sx, sy, sz,
+                Math.max(0, x0 - baseX - 1), Math.min(15, x1 - baseX + 1),
+                Math.max(0, y0 - baseY - 1), Math.min(15, y1 - baseY + 1),
+                Math.max(0, z0 - baseZ - 1), Math.min(15, z1 - baseZ + 1));
+
+        for (int x = x0; x <= x1; x++) {
+            for (int z = z0; z <= z1; z++) {
+                int surface = band.surface(x, z);
+                int top = Math.min(y1, surface);
+                int bottom = Math.max(y0, surface - band.scanDepth() + 1);
+                blocksVisited += Math.max(0, top - bottom + 1);
+
+                for (int y = bottom; y <= top; y++) {
+                    int lx = x - baseX, ly = y - baseY, lz = z - baseZ;
+                    int index = (ly << 8) | (lz << 4) | lx;
+                    BlockState state = scratch[index];
+
+                    // Air is only worth recording just below the surface
+                    if (state.isAir() && surface - y > band.airDepth()) continue;
+
+                    int faces = 0;
+                    for (int i = 0; i < 6; i++) {
+                        BlockState neighbor = isInside(lx, ly, lz, i)
+                                ? scratch[index + NEIGHBOR_OFFSETS[i]]
+                                : borderNeighbor(x, y, z, i);
+                        if (isFaceVisible(state, neighbor, i)) {
+                            faces |= 1 << i;
+                        }
+                    }
+                    volume.set(x - minX, y - minY, z - minZ, state, faces);
+                }
+            }
+        }
+    }
+
+    /** Records the band cells of a processed section, same rules as the uncached path. */
+    private void copySection(VoxelVolume volume, ColumnBand band, SectionResultCache.Section section,
+                                    int sx, int sy, int sz,
+                                    int x0, int x1, int y0, int y1, int z0, int z1) {
+        int minX = volume.minX(), minY = volume.minY(), minZ = volume.minZ();
+        int baseX = sx << 4, baseY = sy << 4, baseZ = sz << 4;
+
+        for (int x = x0; x <= x1; x++) {
+            for (int z = z0; z <= z1; z++) {
+                int surface = band.surface(x, z);
+                int top = Math.min(y1, surface);
+                int bottom = Math.max(y0, surface - band.scanDepth() + 1);
+                blocksVisited += Math.max(0, top - bottom + 1);
+
+                for (int y = bottom; y <= top; y++) {
+                    int index = ((y - baseY) << 8) | ((z - baseZ) << 4) | (x - baseX);
+                    BlockState state = section.state(index);
+                    if (state.isAir() && surface - y > band.airDepth()) continue;
+                    volume.set(x - minX, y - minY, z - minZ, state, section.faceMasks()[index]);
+                }
+            }
+        }
+    }
+
+    /** States and face masks of every cell in the section. */
+    private SectionResultCache.Section processSection(int sx, int sy, int sz) {
+        unpack(sx, sy, sz, 0, 15, 0, 15, 0, 15);
+
+        var palette = new ArrayList<BlockState>();
+        var paletteIds = new Reference2IntOpenHashMap<BlockState>();
+        short[] states = new short[SECTION_VOLUME];
+        byte[] faceMasks = new byte[SECTION_VOLUME];
+        int baseX = sx << 4, baseY = sy << 4, baseZ = sz << 4;
+        for (int index = 0; index < SECTION_VOLUME; index++) {
+            int lx = index & 15, lz = (index >> 4) & 15, ly = index >> 8;
+            BlockState state = scratch[index];
+            states[index] = (short) paletteIds.computeIfAbsent(state, s -> {
+                palette.add(state);
+                return palette.size() - 1;
+            });
+
+            int faces = 0;
+            for (int i = 0; i < 6; i++) {
+                BlockState neighbor = isInside(lx, ly, lz, i)
+                        ? scratch[index + NEIGHBOR_OFFSETS[i]]
+                        : borderNeighbor(baseX + lx, baseY + ly, baseZ + lz, i);
+                if (isFaceVisible(state, neighbor, i)) {
+                    faces |= 1 << i;
+                }
+            }
+            faceMasks[index] = (byte) faces;
+        }
+        return new SectionResultCache.Section(palette.toArray(new BlockState[0]), states, faceMasks);
+    }
+
+    /** Whether the chunk and its four neighbours are loaded, i.e. every face of the section is known. */
+    private boolean isCacheable(int sx, int sz) {
+        return snapshot.isLoaded(sx, sz) && snapshot.isLoaded(sx - 1, sz) && snapshot.isLoaded(sx + 1, sz)
+                && snapshot.isLoaded(sx, sz - 1) && snapshot.isLoaded(sx, sz + 1);
+    }
+
+    private void unpack(int sx, int sy, int sz, int lx0, int lx1, int ly0, int ly1, int lz0, int lz1) {
+        PalettedContainer<BlockState> container = snapshot.container(sx, sy, sz);
+        if (container == null) {
+            Arrays.fill(scratch, AIR);
+            return;
+        }
+        stateReads += (lx1 - lx0 + 1) * (ly1 - ly0 + 1) * (lz1 - lz0 + 1);
+        for (int y = ly0; y <= ly1; y++) {
+            for (int z = lz0; z <= lz1; z++) {
+                int row = (y << 8) | (z << 4);
+                for (int x = lx0; x <= lx1; x++) {
+                    scratch[row | x] = container.get(x, y, z);
+                }
+            }
+        }
+    }
+
+    /** {@link FaceVisibility#isVisible} for direction id {@code direction}. */
+    static boolean isFaceVisible(BlockState state, BlockState neighbor, int direction) {
+        return FaceVisibility.isVisible(state, neighbor, DIRECTIONS[direction]);
+    }
+
+    private BlockState borderNeighbor(int x, int y, int z, int direction) {
+        Direction d = Direction.byId(direction);
+        return stateAt(x + d.getOffsetX(), y + d.getOffsetY(), z + d.getOffsetZ());
+    }
+
+    private static boolean isInside(int lx, int ly, int lz, int direction) {
+        return switch (direction) {
+            case 0 -> ly > 0;
+            case 1 -> ly < 15;
+            case 2 -> lz > 0;
+            case 3 -> lz < 15;
+            case 4 -> lx > 0;
+            default -> lx < 15;
+        };
+    }
+}
@@ -0,0 +1,290 @@
+package com.holomap.scan;
+
+import com.holomap.cache.ChunkSummary;
+import com.holomap.cache.RegionCache;
+import com.holomap.debug.HoloMapMetrics;
+import com.holomap.map.MinimapData3D;
+import com.holomap.map.VoxelVolume;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+
+/**
+ * Keeps the current scan volume up to date between full scans.
+ *
+ * Client block updates and chunk loads mark the affected world columns dirty; at the end of
+ * every client tick up to {@link #COLUMNS_PER_TICK} of them are rescanned in place and only the
+ * mesh regions covering those columns are flagged for rebuilding.
+ *
+ * The window also follows the player: whenever they cross into a new block column the volume
+ * slides (see {@link MinimapData3D#slideTo}) and only the slab of newly exposed columns is
+ * queued. Moving more than {@link #VERTICAL_SLACK} blocks up or down requests a full scan,
+ * since the Y range is fixed per scan. Everything here runs on the client thread.
+ *
+ * Columns of chunks the client has not loaded are filled from {@link RegionCache} instead of
+ * scanned, and rescanned chunks are handed back to the cache every {@link #SAVE_INTERVAL_TICKS}.
+ *
+ * Columns are rescanned by the rules the volume was built with. After a FLOOD scan the dirty
+ * columns of each chunk are re-extracted together from a box reaching {@link #FLOOD_MARGIN}
+ * columns further out (see {@link SurfaceExtractor#seedSides}).
+ */
+public final class IncrementalScanner {
+    private static final int COLUMNS_PER_TICK = 256;
+    private static final int VERTICAL_SLACK = 8;
+    private static final int SAVE_INTERVAL_TICKS = 100;
+    private static final int FLOOD_MARGIN = 8;
+
+    // World columns (ChunkPos-packed x/z) waiting for a rescan, oldest first
+    private static final LongLinkedOpenHashSet DIRTY_COLUMNS = new LongLinkedOpenHashSet();
+    // Chunks (ChunkPos-packed) rescanned since the last save, and those changed by block updates
+    private static final LongOpenHashSet TOUCHED_CHUNKS = new LongOpenHashSet();
+    private static final LongOpenHashSet EDITED_CHUNKS = new LongOpenHashSet();
+    private static int ticksSinceSave = 0;
+    // Volume for which a vertical full rescan was already requested
+    private static VoxelVolume rescanRequestedFor = null;
+    private static World lastWorld = null;
+
+    private IncrementalScanner() {}
+
+    public static void register() {
+        ClientChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+            SectionResultCache.get().invalidateChunk(world, chunk.getPos().x, chunk.getPos().z);
+            onChunkLoaded(chunk.getPos());
+        });
+        ClientChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> onChunkUnloaded(chunk.getPos()));
+        // Probes are keyed by column only, so they must not outlive the world they were made in
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> SurfaceResolver.clearCache());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            SectionResultCache.get().clear();
+            SurfaceResolver.clearCache();
+        });
+        ClientTickEvents.END_CLIENT_TICK.register(client -> {
+            if (client.world != lastWorld) {
+                lastWorld = client.world; // respawn or dimension change
+                SurfaceResolver.clearCache();
+            }
+            followPlayer(client);
+            processDirtyColumns(client);
+            saveTouchedChunks(client);
+        });
+    }
+
+    /** Called for every block change the client world applies. */
+    public static void onBlockChanged(BlockPos pos) {
+        SectionResultCache.get().invalidateBlock(pos);
+        VoxelVolume volume = MinimapData3D.get().volume();
+        if (volume == null) return;
+
+        // A change just outside the volume can still flip the face of a cell inside it
+        int y = pos.getY();
+        if (y < volume.minY() - 1 || y > volume.minY() + volume.sizeY()) return;
+
+        int x = pos.getX(), z = pos.getZ();
+        EDITED_CHUNKS.add(ChunkPos.toLong(x >> 4, z >> 4));
+        SurfaceResolver.invalidateColumn(x, z);
+        markColumn(volume, x, z);
+        markColumn(volume, x - 1, z);
+        markColumn(volume, x + 1, z);
+        markColumn(volume, x, z - 1);
+        markColumn(volume, x, z + 1);
+    }
+
+    private static void onChunkLoaded(ChunkPos chunkPos) {
+        VoxelVolume volume = MinimapData3D.get().volume();
+        int startX = chunkPos.getStartX(), startZ = chunkPos.getStartZ();
+
+        // The chunk itself plus the border columns of its neighbours, whose side faces change
+        for (int x = startX - 1; x <= startX + 16; x++) {
+            for (int z = startZ - 1; z <= startZ + 16; z++) {
+                boolean inside = x >= startX && x < startX + 16 && z >= startZ && z < startZ + 16;
+                if (inside) SurfaceResolver.invalidateColumn(x, z);
+                if (volume != null) markColumn(volume, x, z);
+            }
+        }
+    }
+
+    private static void onChunkUnloaded(ChunkPos chunkPos) {
+        // Keep showing the last scanned terrain, but don't trust cached probes once it reloads
+        int startX = chunkPos.getStartX(), startZ = chunkPos.getStartZ();
+        for (int x = startX; x < startX + 16; x++) {
+            for (int z = startZ; z < startZ + 16; z++) {
+                SurfaceResolver.invalidateColumn(x, z);
+            }
+        }
+    }
+
+    private static void followPlayer(MinecraftClient client) {
+        var data = MinimapData3D.get();
+        VoxelVolume volume = data.volume();
+        if (volume == null || client.player == null) return;
+
+        BlockPos origin = data.origin();
+        BlockPos player = client.player.getBlockPos();
+
+        if (Math.abs(player.getY() - origin.getY()) > VERTICAL_SLACK && rescanRequestedFor != volume) {
+            rescanRequestedFor = volume;
+            BlockScanner3D.scanAroundPlayerAsync(client.player, data.horizontalRadius(), data.verticalRange());
+        }
+
+        int dx = player.getX() - origin.getX();
+        int dz = player.getZ() - origin.getZ();
+        if (dx == 0 && dz == 0) return;
+
+        int oldMinX = volume.minX(), oldMinZ = volume.minZ();
+        data.slideTo(player.getX(), player.getZ());
+        int newMinX = volume.minX(), newMinZ = volume.minZ();
+
+        // Columns that left drop out of their mesh regions; columns that entered need a scan
+        forEachColumnOutside(oldMinX, oldMinZ, newMinX, newMinZ, volume, data::markColumnDirty);
+        forEachColumnOutside(newMinX, newMinZ, oldMinX, oldMinZ, volume, (x, z) -> markColumn(volume, x, z));
+    }
+
+    /** Visits the columns of window {@code a} that are not part of window {@code b}. */
+    private static void forEachColumnOutside(int aMinX, int aMinZ, int bMinX, int bMinZ,
+                                             VoxelVolume volume, ColumnVisitor visitor) {
+        for (int x = aMinX; x < aMinX + volume.sizeX(); x++) {
+            boolean insideX = x >= bMinX && x < bMinX + volume.sizeX();
+            for (int z = aMinZ; z < aMinZ + volume.sizeZ(); z++) {
+                if (insideX && z >= bMinZ && z < bMinZ + volume.sizeZ()) continue;
+                visitor.visit(x, z);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ColumnVisitor {
+        void visit(int x, int z);
+    }
+
+    private static void markColumn(VoxelVolume volume, int x, int z) {
+        if (volume.containsColumn(x, z)) {
+            DIRTY_COLUMNS.add(ChunkPos.toLong(x, z));
+        }
+    }
+
+    private static void processDirtyColumns(MinecraftClient client) {
+        if (DIRTY_COLUMNS.isEmpty()) return;
+
+        var data = MinimapData3D.get();
+        VoxelVolume volume = data.volume();
+        if (volume == null || client.world == null) {
+            DIRTY_COLUMNS.clear();
+            return;
+        }
+
+        int count = Math.min(COLUMNS_PER_TICK, DIRTY_COLUMNS.size());
+        long[] batch = new long[count];
+        int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long column = DIRTY_COLUMNS.removeFirstLong();
+            batch[i] = column;
+            minX = Math.min(minX, ChunkPos.getPackedX(column));
+            maxX = Math.max(maxX, ChunkPos.getPackedX(column));
+            minZ = Math.min(minZ, ChunkPos.getPackedZ(column));
+            maxZ = Math.max(maxZ, ChunkPos.getPackedZ(column));
+        }
+
+        int yEnd = volume.minY();
+        int yStart = volume.minY() + volume.sizeY() - 1;
+        boolean caveLayer = data.caveLayer();
+        int probeStart = caveLayer ? SurfaceResolver.caveProbeStart(data.origin()) : yStart;
+        int scanDepth = BlockScanner3D.scanDepth(data.verticalRange());
+
+        // Scanned right here on the client thread, so the live chunk data is safe to read
+        var scanner = new ChunkSectionScanner(WorldSnapshot.live(client.world, minX, yEnd, minZ, maxX, yStart, maxZ));
+        int[] surfaceY = new int[1];
+        // Dirty loaded columns of a FLOOD-built volume, per ChunkPos-packed chunk
+        var floodColumns = new Long2ObjectOpenHashMap<LongArrayList>();
+        // Cached summaries of unloaded chunks read for this batch; null values are cache misses
+        var cached = new Long2ObjectOpenHashMap<ChunkSummary>();
+        for (long column : batch) {
+            int x = ChunkPos.getPackedX(column), z = ChunkPos.getPackedZ(column);
+            if (!volume.containsColumn(x, z)) continue; // volume replaced by a newer full scan
+
+            long chunk = ChunkPos.toLong(x >> 4, z >> 4);
+            if (!client.world.getChunkManager().isChunkLoaded(x >> 4, z >> 4)) {
+                if (!cached.containsKey(chunk)) {
+                    ChunkSummary loaded = RegionCache.get().load(client.world, x >> 4, z >> 4);
+                    HoloMapMetrics.add(loaded != null ? HoloMapMetrics.Counter.REGION_CACHE_HITS
+                            : HoloMapMetrics.Counter.REGION_CACHE_MISSES, 1);
+                    cached.put(chunk, loaded);
+                }
+                ChunkSummary summary = cached.get(chunk);
+                if (summary != null) {
+                    summary.applyColumn(volume, x, z);
+                    data.markColumnDirty(x, z);
+                }
+                continue;
+            }
+            TOUCHED_CHUNKS.add(chunk);
+            if (data.surfaceOnly()) {
+                floodColumns.computeIfAbsent(chunk, key -> new LongArrayList()).add(column);
+                continue;
+            }
+
+            SurfaceResolver.resolve(scanner, x, z, 1, 1, probeStart, yEnd, caveLayer, surfaceY);
+            int cx = x - volume.minX(), cz = z - volume.minZ();
+            volume.clearColumn(cx, cz);
+            scanner.scanInto(volume, surfaceY, scanDepth, BlockScanner3D.AIR_DEPTH, cx, cz, 1, 1);
+            data.markColumnDirty(x, z);
+        }
+        HoloMapMetrics.add(HoloMapMetrics.Counter.BLOCKS_VISITED, scanner.blocksVisited());
+        HoloMapMetrics.add(HoloMapMetrics.Counter.BLOCK_STATE_READS, scanner.stateReads());
+
+        for (var entry : floodColumns.long2ObjectEntrySet()) {
+            rescanFlood(client, data, volume, ChunkPos.getPackedX(entry.getLongKey()),
+                    ChunkPos.getPackedZ(entry.getLongKey()), entry.getValue(), probeStart);
+        }
+    }
+
+    /** Re-extracts the given columns of one chunk of a FLOOD-built volume. */
+    private static void rescanFlood(MinecraftClient client, MinimapData3D data, VoxelVolume volume,
+                                    int chunkX, int chunkZ, LongArrayList columns, int probeStart) {
+        int minX = (chunkX << 4) - FLOOD_MARGIN, minZ = (chunkZ << 4) - FLOOD_MARGIN;
+        int size = 16 + 2 * FLOOD_MARGIN;
+        int minY = volume.minY(), maxY = volume.minY() + volume.sizeY() - 1;
+        var snapshot = WorldSnapshot.live(client.world, minX, minY, minZ, minX + size - 1, maxY, minZ + size - 1);
+        var extractor = new SurfaceExtractor(snapshot, minX, minY, minZ, size, volume.sizeY(), size);
+        BlockPos origin = data.origin();
+        extractor.seed(data.caveLayer(), origin.getX(), probeStart, origin.getZ());
+        extractor.seedSides();
+        extractor.fill(() -> false);
+
+        boolean[] selected = new boolean[size * size];
+        for (int i = 0; i < columns.size(); i++) {
+            int x = ChunkPos.getPackedX(columns.getLong(i)), z = ChunkPos.getPackedZ(columns.getLong(i));
+            selected[(x - minX) * size + (z - minZ)] = true;
+            volume.clearColumn(x - volume.minX(), z - volume.minZ());
+            data.markColumnDirty(x, z);
+        }
+        extractor.writeTo(volume, selected);
+        HoloMapMetrics.add(HoloMapMetrics.Counter.BLOCKS_VISITED, extractor.blocksVisited());
+        HoloMapMetrics.add(HoloMapMetrics.Counter.BLOCK_STATE_READS, extractor.stateReads());
+    }
+
+    private static void saveTouchedChunks(MinecraftClient client) {
+        if (++ticksSinceSave < SAVE_INTERVAL_TICKS) return;
+        ticksSinceSave = 0;
+
+        VoxelVolume volume = MinimapData3D.get().volume();
+        if (volume != null && client.world != null) {
+            for (LongIterator it = TOUCHED_CHUNKS.iterator(); it.hasNext(); ) {
+                long chunk = it.nextLong();
+                RegionCache.get().store(client.world, volume, ChunkPos.getPackedX(chunk),
+                        ChunkPos.getPackedZ(chunk), EDITED_CHUNKS.contains(chunk));
+            }
+        }
+        TOUCHED_CHUNKS.clear();
+        EDITED_CHUNKS.clear();
+    }
+}
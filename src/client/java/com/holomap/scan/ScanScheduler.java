@@ -0,0 +1,202 @@
+package com.holomap.scan;
+
+import com.holomap.HoloMapMod;
+import com.holomap.map.MinimapData3D;
+import com.holomap.map.VoxelVolume;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Runs full scans on a small dedicated pool instead of the common ForkJoinPool.
+ *
+ * A request that matches a queued or running scan (same world and radii, origin within
+ * {@link #COALESCE_DISTANCE} blocks) is dropped, so the HUD asking every frame until the first
+ * result lands still costs one scan. A new request replaces queued scans of the same world and
+ * radii, and cancels any scan whose origin the player has left by more than
+ * {@link #SUPERSEDE_DISTANCE} blocks; a cancelled scan stops at its next checkpoint and its
+ * result is never applied. Idle workers take the queued scan nearest the player first.
+ *
+ * Requests come from the client thread; scans run on at most {@link #MAX_WORKERS} threads.
+ */
+public final class ScanScheduler {
+    private static final ScanScheduler INSTANCE = new ScanScheduler();
+
+    private static final int MAX_WORKERS = 2;
+    private static final int COALESCE_DISTANCE = 8;
+    private static final int SUPERSEDE_DISTANCE = 32;
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(MAX_WORKERS, workerFactory());
+
+    // Guarded by this
+    private final List<ScanJob> queued = new ArrayList<>();
+    private final List<ScanJob> running = new ArrayList<>();
+    private BlockPos playerPos = BlockPos.ORIGIN;
+    private long nextSequence = 0;
+    private long appliedSequence = -1; // client thread
+
+    private long submitted, coalesced, cancelled, completed;
+    private long totalLatencyNanos, lastLatencyNanos, maxLatencyNanos;
+
+    private ScanScheduler() {}
+
+    public static ScanScheduler get() {
+        return INSTANCE;
+    }
+
+    /** Queues a full scan around {@code origin} unless an equivalent one is already pending. */
+    public synchronized void request(World world, BlockPos origin, int hr, int vr, boolean caveLayer,
+                                     BlockScanner3D.ScanMode scanMode) {
+        playerPos = origin.toImmutable();
+        for (ScanJob job : queued) {
+            if (job.matches(world, origin, hr, vr, caveLayer, scanMode)) {
+                coalesced++;
+                return;
+            }
+        }
+        for (ScanJob job : running) {
+            if (job.matches(world, origin, hr, vr, caveLayer, scanMode)) {
+                coalesced++;
+                return;
+            }
+        }
+
+        queued.removeIf(job -> supersede(job, world, origin, hr, vr, true));
+        running.forEach(job -> supersede(job, world, origin, hr, vr, false));
+
+        queued.add(new ScanJob(nextSequence++, world, playerPos, hr, vr, caveLayer, scanMode, System.nanoTime()));
+        submitted++;
+        workers.execute(this::runNearest);
+    }
+
+    public synchronized int queueDepth() { return queued.size(); }
+    public synchronized int runningCount() { return running.size(); }
+    public synchronized long completedCount() { return completed; }
+    /** Submit-to-apply time of the last completed scan. */
+    public synchronized long lastLatencyNanos() { return lastLatencyNanos; }
+
+    @Override
+    public synchronized String toString() {
+        long averageMicros = completed == 0 ? 0 : totalLatencyNanos / completed / 1000;
+        return String.format("%d queued, %d running, %d submitted, %d coalesced, %d cancelled, %d completed, "
+                        + "latency last %d us / avg %d us / max %d us",
+                queued.size(), running.size(), submitted, coalesced, cancelled, completed,
+                lastLatencyNanos / 1000, averageMicros, maxLatencyNanos / 1000);
+    }
+
+    /** Cancels the job if the new request makes it pointless. Returns whether it did. */
+    private boolean supersede(ScanJob job, World world, BlockPos origin, int hr, int vr, boolean isQueued) {
+        boolean sameKind = job.world == world && job.hr == hr && job.vr == vr;
+        boolean left = job.world != world || distance(job.origin, origin) > SUPERSEDE_DISTANCE;
+        // A running scan of the same kind is still worth finishing, the window slides from there
+        if (!(sameKind && isQueued) && !left) return false;
+
+        job.cancelled = true;
+        cancelled++;
+        return true;
+    }
+
+    /** One execution per submitted job; takes whichever queued job is nearest the player now. */
+    private void runNearest() {
+        ScanJob job;
+        synchronized (this) {
+            if (queued.isEmpty()) return; // its job was superseded
+            job = queued.get(0);
+            for (ScanJob candidate : queued) {
+                if (distance(candidate.origin, playerPos) < distance(job.origin, playerPos)) job = candidate;
+            }
+            queued.remove(job);
+            running.add(job);
+        }
+
+        final ScanJob scan = job;
+        VoxelVolume volume = null;
+        try {
+            volume = BlockScanner3D.scan3DTerrain(scan.world, scan.origin, scan.hr, scan.vr,
+                    scan.caveLayer, scan.scanMode, () -> scan.cancelled);
+        } catch (Exception e) {
+            HoloMapMod.LOGGER.error("3D Scan failed", e);
+        } finally {
+            // Stays running until the client thread has applied or dropped it, so the HUD asking
+            // again before the result lands is still coalesced
+            final VoxelVolume result = volume;
+            MinecraftClient.getInstance().execute(() -> finish(scan, result));
+        }
+    }
+
+    /** Client thread: retires a job and applies its result, unless it is null, cancelled or outdated. */
+    private void finish(ScanJob job, VoxelVolume volume) {
+        synchronized (this) {
+            running.remove(job);
+        }
+        if (volume == null || job.cancelled) return;
+        apply(job, volume);
+    }
+
+    private void apply(ScanJob job, VoxelVolume volume) {
+        // A newer scan may have finished first; never replace it with an older one
+        if (job.sequence < appliedSequence) return;
+        appliedSequence = job.sequence;
+        MinimapData3D.get().setScanResult(job.origin, job.hr, job.vr, job.caveLayer,
+                job.scanMode == BlockScanner3D.ScanMode.FLOOD, volume);
+
+        long latency = System.nanoTime() - job.submittedNanos;
+        synchronized (this) {
+            completed++;
+            lastLatencyNanos = latency;
+            totalLatencyNanos += latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        }
+        HoloMapMod.LOGGER.debug("[HoloMap] Scan scheduler: {}", this);
+    }
+
+    private static int distance(BlockPos a, BlockPos b) {
+        return Math.max(Math.abs(a.getY() - b.getY()),
+                Math.max(Math.abs(a.getX() - b.getX()), Math.abs(a.getZ() - b.getZ())));
+    }
+
+    private static ThreadFactory workerFactory() {
+        var counter = new AtomicInteger();
+        return task -> {
+            var thread = new Thread(task, "HoloMap Scan Worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+    }
+
+    private static final class ScanJob {
+        final long sequence;
+        final World world;
+        final BlockPos origin;
+        final int hr, vr;
+        final boolean caveLayer;
+        final BlockScanner3D.ScanMode scanMode;
+        final long submittedNanos;
+        volatile boolean cancelled = false;
+
+        ScanJob(long sequence, World world, BlockPos origin, int hr, int vr, boolean caveLayer,
+                BlockScanner3D.ScanMode scanMode, long submittedNanos) {
+            this.sequence = sequence;
+            this.world = world;
+            this.origin = origin;
+            this.hr = hr;
+            this.vr = vr;
+            this.caveLayer = caveLayer;
+            this.scanMode = scanMode;
+            this.submittedNanos = submittedNanos;
+        }
+
+        boolean matches(World world, BlockPos origin, int hr, int vr, boolean caveLayer,
+                        BlockScanner3D.ScanMode scanMode) {
+            return !cancelled && this.world == world && this.hr == hr && this.vr == vr
+                    && this.caveLayer == caveLayer && this.scanMode == scanMode && distance(this.origin, origin) <= COALESCE_DISTANCE;
+        }
+    }
+}
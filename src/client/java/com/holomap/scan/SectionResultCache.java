@@ -0,0 +1,141 @@
+package com.holomap.scan;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+
+/**
+ * Processed chunk sections (every cell's state and face mask) kept between scans, so
+ * overlapping rescans only redo the sections whose blocks changed since.
+ *
+ * Keyed by {@link ChunkSectionPos#asLong}. A block update drops its section plus any neighbour
+ * whose border faces it can flip; a chunk load drops the whole column and its four neighbours.
+ * Bounded both by entry count and by an estimate of heap bytes, evicting least recently used.
+ *
+ * Scans compute results off the client thread from a {@link WorldSnapshot}, so a section can
+ * change between the capture and the put: each snapshot takes {@link #stamp()} on the client
+ * thread while capturing, and {@link #put} refuses results stamped before the key's last
+ * invalidation. Thread-safe.
+ */
+public final class SectionResultCache {
+    private static final SectionResultCache INSTANCE = new SectionResultCache();
+
+    private static final int MAX_ENTRIES = 2048;
+    private static final long MAX_BYTES = 24L * 1024 * 1024;
+    // Invalidation generations remembered per key before falling back to a global floor
+    private static final int MAX_TRACKED_INVALIDATIONS = 8192;
+
+    /** One section's cells indexed {@code (y << 8) | (z << 4) | x}, states stored as palette indices. */
+    record Section(BlockState[] palette, short[] states, byte[] faceMasks) {
+        BlockState state(int index) {
+            return palette[states[index]];
+        }
+
+        long byteSize() {
+            return 16 + palette.length * 4L + states.length * 2L + faceMasks.length + 64;
+        }
+    }
+
+    private final Long2ObjectLinkedOpenHashMap<Section> sections = new Long2ObjectLinkedOpenHashMap<>(256); // LRU first
+    private final Long2LongOpenHashMap invalidatedAt = new Long2LongOpenHashMap();
+    private long generation = 0;
+    private long floor = 0; // results stamped before this are refused
+    private long bytes = 0;
+
+    private long hits, misses, evictions, invalidations;
+
+    private SectionResultCache() {}
+
+    public static SectionResultCache get() {
+        return INSTANCE;
+    }
+
+    /** Generation to pass to {@link #put} for a result computed from chunk data captured after this call. */
+    synchronized long stamp() {
+        return generation;
+    }
+
+    synchronized Section get(int sx, int sy, int sz) {
+        Section section = sections.getAndMoveToLast(ChunkSectionPos.asLong(sx, sy, sz));
+        if (section != null) hits++;
+        else misses++;
+        return section;
+    }
+
+    synchronized void put(int sx, int sy, int sz, long stamp, Section section) {
+        long key = ChunkSectionPos.asLong(sx, sy, sz);
+        if (stamp < floor || invalidatedAt.get(key) > stamp) return;
+
+        Section old = sections.putAndMoveToLast(key, section);
+        if (old != null) bytes -= old.byteSize();
+        bytes += section.byteSize();
+
+        while ((sections.size() > MAX_ENTRIES || bytes > MAX_BYTES) && !sections.isEmpty()) {
+            bytes -= sections.removeFirst().byteSize();
+            evictions++;
+        }
+    }
+
+    /** Drops the section holding the block and any neighbour section it borders. */
+    public synchronized void invalidateBlock(BlockPos pos) {
+        int sx = pos.getX() >> 4, sy = pos.getY() >> 4, sz = pos.getZ() >> 4;
+        int lx = pos.getX() & 15, ly = pos.getY() & 15, lz = pos.getZ() & 15;
+        invalidate(sx, sy, sz);
+        if (lx == 0) invalidate(sx - 1, sy, sz);
+        if (lx == 15) invalidate(sx + 1, sy, sz);
+        if (ly == 0) invalidate(sx, sy - 1, sz);
+        if (ly == 15) invalidate(sx, sy + 1, sz);
+        if (lz == 0) invalidate(sx, sy, sz - 1);
+        if (lz == 15) invalidate(sx, sy, sz + 1);
+    }
+
+    /** Drops every section of the chunk column and of the columns next to it. */
+    public synchronized void invalidateChunk(World world, int chunkX, int chunkZ) {
+        for (int sy = world.getBottomSectionCoord(); sy < world.getTopSectionCoord(); sy++) {
+            invalidate(chunkX, sy, chunkZ);
+            invalidate(chunkX - 1, sy, chunkZ);
+            invalidate(chunkX + 1, sy, chunkZ);
+            invalidate(chunkX, sy, chunkZ - 1);
+            invalidate(chunkX, sy, chunkZ + 1);
+        }
+    }
+
+    public synchronized void clear() {
+        sections.clear();
+        invalidatedAt.clear();
+        bytes = 0;
+        floor = ++generation;
+    }
+
+    public synchronized long hits() { return hits; }
+    public synchronized long misses() { return misses; }
+    public synchronized long evictions() { return evictions; }
+    public synchronized long invalidations() { return invalidations; }
+    public synchronized int size() { return sections.size(); }
+    public synchronized long byteSize() { return bytes; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d sections, %d KB, %d hits, %d misses, %d evictions, %d invalidations",
+                sections.size(), bytes / 1024, hits, misses, evictions, invalidations);
+    }
+
+    private void invalidate(int sx, int sy, int sz) {
+        long key = ChunkSectionPos.asLong(sx, sy, sz);
+        generation++;
+        if (invalidatedAt.size() >= MAX_TRACKED_INVALIDATIONS) {
+            invalidatedAt.clear();
+            floor = generation;
+        }
+        invalidatedAt.put(key, generation);
+
+        Section old = sections.remove(key);
+        if (old != null) {
+            bytes -= old.byteSize();
+            invalidations++;
+        }
+    }
+}
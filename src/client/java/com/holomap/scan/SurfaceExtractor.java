@@ -0,0 +1,263 @@
+package com.holomap.scan;
+
+import com.holomap.map.VoxelVolume;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.function.BooleanSupplier;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.Direction;
+
+/**
+ * Surface-extraction scan: flood-fills the open cells of a box that can be reached from open
+ * space, then records only the blocks that touch them.
+ *
+ * Open cells are the ones light and sight pass through: air, fluids and anything not opaque.
+ * Above ground the fill starts from the sky, i.e. every cell above its column's heightmap top,
+ * plus open cells on the box ceiling (terrain rising above the box). In the cave layer it starts
+ * from the player's head instead, unless that is under the open sky; the sky still counts as
+ * open there, it is just not filled from. Sky cells are air by definition and are never read or
+ * stored, so the reads and the fill's own bookkeeping follow the terrain's exposed surface,
+ * overhangs and cave mouths. Columns of unloaded chunks count as closed: nothing flows through
+ * them and no face towards them is shown, so the edge of the loaded area does not turn into a
+ * wall.
+ *
+ * A recorded cell is any non-air cell that was reached or borders a reached cell; its face mask
+ * is {@link FaceVisibility} restricted to faces towards reached cells (faces on the box border
+ * keep the plain rule). Solid rock, sealed caves and the water below a lake's surface layer
+ * never get an entry.
+ *
+ * Box cells are indexed {@code (x * sizeY + y) * sizeZ + z}; the fill keeps one 16x16x16 bit
+ * block per box section it actually enters. One extractor per scan, on one thread.
+ */
+final class SurfaceExtractor {
+    private static final int CANCEL_CHECK_INTERVAL = 4096; // cells popped between cancellation checks
+    private static final int CLOSED = Integer.MAX_VALUE; // sky start of an unloaded column
+    private static final Direction[] DIRECTIONS = {Direction.DOWN, Direction.UP, Direction.NORTH,
+            Direction.SOUTH, Direction.WEST, Direction.EAST};
+
+    private final ChunkSectionScanner scanner;
+    private final int minX, minY, minZ, sizeX, sizeY, sizeZ;
+    private final int[] skyFrom; // per column x * sizeZ + z: first sky cell, sizeY if none, or CLOSED
+    private final SectionBits reached;
+    private final SectionBits recorded;
+    private final IntArrayList stack = new IntArrayList();
+    private final IntArrayList surface = new IntArrayList(); // cells to record, in discovery order
+    private long blocksVisited = 0;
+
+    SurfaceExtractor(WorldSnapshot snapshot, int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ) {
+        this.scanner = new ChunkSectionScanner(snapshot);
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.skyFrom = new int[sizeX * sizeZ];
+        this.reached = new SectionBits(sizeX, sizeY, sizeZ);
+        this.recorded = new SectionBits(sizeX, sizeY, sizeZ);
+
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                int top = scanner.heightmapTop(minX + x, minZ + z);
+                skyFrom[x * sizeZ + z] = top == ChunkSectionScanner.NO_HEIGHTMAP
+                        ? CLOSED : Math.max(0, Math.min(sizeY, top + 1 - minY));
+            }
+        }
+    }
+
+    /**
+     * Marks the cells the fill starts from. Returns {@code false} if there are none, e.g. a
+     * cave-layer scan whose player stands inside a block.
+     */
+    boolean seed(boolean caveLayer, int headX, int headY, int headZ) {
+        int hx = headX - minX, hy = headY - minY, hz = headZ - minZ;
+        boolean headInSky = contains(hx, hy, hz) && !isClosed(hx, hz) && hy >= skyFrom[hx * sizeZ + hz];
+        if (caveLayer && !headInSky) {
+            for (int y = hy; y >= hy - 1; y--) { // head, then feet
+                if (contains(hx, y, hz) && !isClosed(hx, hz) && reachOpen(hx, y, hz)) return true;
+            }
+            return false;
+        }
+
+        boolean seeded = false;
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                if (isClosed(x, z)) continue;
+                int from = skyFrom[x * sizeZ + z];
+                // Sky cells whose cell below or beside may be solid: up to the highest neighbouring top
+                int to = from;
+                if (x > 0) to = Math.max(to, sky(x - 1, z));
+                if (x < sizeX - 1) to = Math.max(to, sky(x + 1, z));
+                if (z > 0) to = Math.max(to, sky(x, z - 1));
+                if (z < sizeZ - 1) to = Math.max(to, sky(x, z + 1));
+                for (int y = from; y <= Math.min(to, sizeY - 1); y++) {
+                    stack.add(index(x, y, z));
+                    seeded = true;
+                }
+
+                // Terrain continuing above the box: its open ceiling cells lead out
+                if (from == sizeY && reachOpen(x, sizeY - 1, z)) seeded = true;
+            }
+        }
+        return seeded;
+    }
+
+    /**
+     * Also starts the fill from every open cell on the box's four sides. For boxes cut out of a
+     * larger area, whose open cells may connect to open space outside them; caves touching the
+     * sides then count as open, which shows a little more than a full scan would, never less.
+     */
+    void seedSides() {
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                if ((x > 0 && x < sizeX - 1 && z > 0 && z < sizeZ - 1) || isClosed(x, z)) continue;
+                for (int y = 0; y < skyFrom[x * sizeZ + z]; y++) {
+                    reachOpen(x, y, z);
+                }
+            }
+        }
+    }
+
+    /** Runs the fill; returns {@code false} if {@code cancelled} turned true. */
+    boolean fill(BooleanSupplier cancelled) {
+        int popped = 0;
+        while (!stack.isEmpty()) {
+            if (++popped % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) return false;
+            int i = stack.removeInt(stack.size() - 1);
+            int x = i / (sizeY * sizeZ), y = i / sizeZ % sizeY, z = i % sizeZ;
+            blocksVisited++;
+
+            for (int d = 0; d < 6; d++) {
+                Direction direction = DIRECTIONS[d];
+                int nx = x + direction.getOffsetX(), ny = y + direction.getOffsetY(), nz = z + direction.getOffsetZ();
+                if (!contains(nx, ny, nz) || isClosed(nx, nz)) continue;
+                if (isReached(nx, ny, nz) || recorded.get(nx, ny, nz)) continue;
+
+                BlockState state = scanner.stateAt(minX + nx, minY + ny, minZ + nz);
+                if (isOpen(state)) {
+                    reach(nx, ny, nz, state);
+                } else {
+                    record(nx, ny, nz);
+                }
+            }
+        }
+        return !cancelled.getAsBoolean();
+    }
+
+    /**
+     * Writes the recorded cells into {@code volume}, which covers the box's Y range. With
+     * {@code columns} (per box column {@code x * sizeZ + z}) only those columns are written.
+     */
+    void writeTo(VoxelVolume volume, boolean[] columns) {
+        for (int n = 0; n < surface.size(); n++) {
+            int i = surface.getInt(n);
+            int x = i / (sizeY * sizeZ), y = i / sizeZ % sizeY, z = i % sizeZ;
+            if (columns != null && !columns[x * sizeZ + z]) continue;
+            int wx = minX + x, wy = minY + y, wz = minZ + z;
+            if (!volume.containsColumn(wx, wz)) continue;
+            BlockState state = scanner.stateAt(wx, wy, wz);
+            blocksVisited++;
+
+            int faces = 0;
+            for (int d = 0; d < 6; d++) {
+                Direction direction = DIRECTIONS[d];
+                int nx = x + direction.getOffsetX(), ny = y + direction.getOffsetY(), nz = z + direction.getOffsetZ();
+                if (contains(nx, ny, nz) && !isReached(nx, ny, nz)) continue;
+                BlockState neighbor = scanner.stateAt(wx + direction.getOffsetX(), wy + direction.getOffsetY(),
+                        wz + direction.getOffsetZ());
+                if (ChunkSectionScanner.isFaceVisible(state, neighbor, d)) {
+                    faces |= 1 << d;
+                }
+            }
+            if (faces != 0) volume.set(wx - volume.minX(), wy - volume.minY(), wz - volume.minZ(), state, faces);
+        }
+    }
+
+    long blocksVisited() {
+        return blocksVisited;
+    }
+
+    long stateReads() {
+        return scanner.stateReads();
+    }
+
+    /** Whether the fill passes through the state: air, fluids and blocks that do not fully hide what is behind. */
+    static boolean isOpen(BlockState state) {
+        return state.isAir() || !state.getFluidState().isEmpty() || !state.isOpaque();
+    }
+
+    /** Reaches the cell if it is open and not reached yet; returns whether it is open. */
+    private boolean reachOpen(int x, int y, int z) {
+        if (isReached(x, y, z)) return true;
+        BlockState state = scanner.stateAt(minX + x, minY + y, minZ + z);
+        if (!isOpen(state)) return false;
+        reach(x, y, z, state);
+        return true;
+    }
+
+    /** Marks an open cell reached and queues it; non-air ones (water, glass, plants) are recorded too. */
+    private void reach(int x, int y, int z, BlockState state) {
+        reached.set(x, y, z);
+        if (!state.isAir()) record(x, y, z);
+        stack.add(index(x, y, z));
+    }
+
+    private void record(int x, int y, int z) {
+        recorded.set(x, y, z);
+        surface.add(index(x, y, z));
+    }
+
+    private boolean isReached(int x, int y, int z) {
+        return y >= skyFrom[x * sizeZ + z] || reached.get(x, y, z);
+    }
+
+    private boolean isClosed(int x, int z) {
+        return skyFrom[x * sizeZ + z] == CLOSED;
+    }
+
+    /** Sky start of a neighbouring column; closed columns expose nothing. */
+    private int sky(int x, int z) {
+        int from = skyFrom[x * sizeZ + z];
+        return from == CLOSED ? 0 : from;
+    }
+
+    private boolean contains(int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < sizeX && y < sizeY && z < sizeZ;
+    }
+
+    private int index(int x, int y, int z) {
+        return (x * sizeY + y) * sizeZ + z;
+    }
+
+    /** One bit per box cell, allocated a 16x16x16 block (64 longs) at a time on first write. */
+    private static final class SectionBits {
+        private final int blocksY, blocksZ;
+        private final long[][] blocks;
+
+        SectionBits(int sizeX, int sizeY, int sizeZ) {
+            this.blocksY = (sizeY + 15) >> 4;
+            this.blocksZ = (sizeZ + 15) >> 4;
+            this.blocks = new long[((sizeX + 15) >> 4) * blocksY * blocksZ][];
+        }
+
+        boolean get(int x, int y, int z) {
+            long[] block = blocks[block(x, y, z)];
+            int bit = bit(x, y, z);
+            return block != null && (block[bit >>> 6] & (1L << bit)) != 0;
+        }
+
+        void set(int x, int y, int z) {
+            int b = block(x, y, z);
+            if (blocks[b] == null) blocks[b] = new long[64];
+            int bit = bit(x, y, z);
+            blocks[b][bit >>> 6] |= 1L << bit;
+        }
+
+        private int block(int x, int y, int z) {
+            return ((x >> 4) * blocksY + (y >> 4)) * blocksZ + (z >> 4);
+        }
+
+        private static int bit(int x, int y, int z) {
+            return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.holomap.scan;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.LightType;
+import net.minecraft.world.World;
+
+/**
+ * Picks the surface Y of every scanned column before the volume scan runs.
+ *
+ * Above ground the chunk's WORLD_SURFACE heightmap gives the top block directly, and only
+ * fluids on top of it are probed through. When the player is underground (or cave mode is
+ * forced) each column is probed top-down from the player's head instead, which selects the
+ * layer the player is standing in; those probes are cached per column.
+ */
+public final class SurfaceResolver {
+    public enum Mode { AUTO, SURFACE, CAVE }
+
+    private static final int CAVE_SKY_LIGHT = 8; // below this at head height counts as underground
+    private static final int PROBE_CACHE_LIMIT = 1 << 16;
+    private static final long NO_ENTRY = Long.MIN_VALUE;
+
+    private static volatile Mode mode = Mode.AUTO;
+    // column (ChunkPos-packed x/z) -> probe start Y, end Y (16 bits each) and result (low int)
+    private static final Long2LongOpenHashMap PROBE_CACHE = new Long2LongOpenHashMap();
+
+    static {
+        PROBE_CACHE.defaultReturnValue(NO_ENTRY);
+    }
+
+    private SurfaceResolver() {}
+
+    public static Mode mode() { return mode; }
+    public static void setMode(Mode newMode) { mode = newMode; }
+
+    /** Called on the client thread when a scan is requested. */
+    static boolean useCaveLayer(World world, BlockPos origin) {
+        return switch (mode) {
+            case SURFACE -> false;
+            case CAVE -> true;
+            case AUTO -> world.getTopY(Heightmap.Type.WORLD_SURFACE,
+                    origin.getX(), origin.getZ()) > origin.getY() + 2
+                    && world.getLightLevel(LightType.SKY, origin.up()) < CAVE_SKY_LIGHT;
+        };
+    }
+
+    /** Y at which cave-layer probes start: the player's head. */
+    static int caveProbeStart(BlockPos origin) {
+        return origin.getY() + 1;
+    }
+
+    /**
+     * Fills {@code surfaceY[x * sizeZ + z]} for the columns of the box starting at
+     * (minX, minZ). Surfaces are the first non-air, non-fluid block at or below
+     * {@code startY}, or {@code endY} if there is none.
+     */
+    static void resolve(ChunkSectionScanner scanner, int minX, int minZ, int sizeX, int sizeZ,
+                        int startY, int endY, boolean caveLayer, int[] surfaceY) {
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                int wx = minX + x, wz = minZ + z;
+                int surface;
+
+                int top = caveLayer ? ChunkSectionScanner.NO_HEIGHTMAP : scanner.heightmapTop(wx, wz);
+                if (top != ChunkSectionScanner.NO_HEIGHTMAP && top <= startY) {
+                    surface = skipFluids(scanner, wx, wz, top, endY);
+                } else {
+                    // Underground, or terrain above the scan window: probe below startY
+                    surface = cachedProbe(scanner, wx, wz, startY, endY);
+                }
+                surfaceY[x * sizeZ + z] = surface;
+            }
+        }
+    }
+
+    public static void invalidateColumn(int x, int z) {
+        synchronized (PROBE_CACHE) {
+            PROBE_CACHE.remove(ChunkPos.toLong(x, z));
+        }
+    }
+
+    public static void clearCache() {
+        synchronized (PROBE_CACHE) {
+            PROBE_CACHE.clear();
+        }
+    }
+
+    private static long probeRange(int startY, int endY) {
+        return ((long) (startY & 0xFFFF) << 48) | ((long) (endY & 0xFFFF) << 32);
+    }
+
+    private static int skipFluids(ChunkSectionScanner scanner, int x, int z, int top, int endY) {
+        for (int y = top; y >= endY; y--) {
+            BlockState state = scanner.stateAt(x, y, z);
+            if (!state.isAir() && state.getFluidState().isEmpty()) {
+                return y;
+            }
+        }
+        return endY;
+    }
+
+    private static int cachedProbe(ChunkSectionScanner scanner, int x, int z, int startY, int endY) {
+        long key = ChunkPos.toLong(x, z);
+        long cached;
+        synchronized (PROBE_CACHE) {
+            cached = PROBE_CACHE.get(key);
+        }
+        long range = probeRange(startY, endY);
+        if (cached != NO_ENTRY && (cached & 0xFFFFFFFF00000000L) == range) {
+            return (int) cached;
+        }
+
+        int surface = scanner.findSurfaceLevel(x, z, startY, endY);
+        synchronized (PROBE_CACHE) {
+            if (PROBE_CACHE.size() >= PROBE_CACHE_LIMIT) PROBE_CACHE.clear();
+            PROBE_CACHE.put(key, range | (surface & 0xFFFFFFFFL));
+        }
+        return surface;
+    }
+}
@@ -0,0 +1,163 @@
+package com.holomap.scan;
+
+import com.holomap.cache.RegionCache;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+
+/**
+ * The chunk data a scan reads, gathered on the client thread: the block state container of
+ * every section touching a box (plus one section of border so every scanned section sees all
+ * its neighbours), and the WORLD_SURFACE heights and cache stamp of every chunk column.
+ *
+ * {@link #capture} copies each container, so the result is immutable and can be read from any
+ * number of scan threads while the world keeps changing. {@link #live} skips the copies for
+ * scans that run on the client thread and finish before it ticks the world again.
+ *
+ * The {@link SectionResultCache#stamp()} is taken together with the data, so results computed
+ * from a snapshot are refused by the cache if their section changed after the capture.
+ */
+final class WorldSnapshot {
+    static final int NO_HEIGHTMAP = Integer.MIN_VALUE;
+
+    final int minSectionX, minSectionY, minSectionZ;
+    final int spanX, spanY, spanZ;
+    final long cacheStamp; // SectionResultCache generation the data is at least as new as
+    private final PalettedContainer<BlockState>[] containers; // null = unloaded, empty or out of world
+    private final int[][] surfaceTops; // per chunk column, x * 16 + z; null = unloaded
+    private final int[] stamps; // per chunk column, see RegionCache#stamp
+
+    @SuppressWarnings("unchecked")
+    private WorldSnapshot(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, boolean copy) {
+        this.cacheStamp = SectionResultCache.get().stamp();
+        this.minSectionX = ChunkSectionPos.getSectionCoord(minX) - 1;
+        this.minSectionY = ChunkSectionPos.getSectionCoord(minY) - 1;
+        this.minSectionZ = ChunkSectionPos.getSectionCoord(minZ) - 1;
+        this.spanX = ChunkSectionPos.getSectionCoord(maxX) + 1 - minSectionX + 1;
+        this.spanY = ChunkSectionPos.getSectionCoord(maxY) + 1 - minSectionY + 1;
+        this.spanZ = ChunkSectionPos.getSectionCoord(maxZ) + 1 - minSectionZ + 1;
+        this.containers = new PalettedContainer[spanX * spanY * spanZ];
+        this.surfaceTops = new int[spanX * spanZ][];
+        this.stamps = new int[spanX * spanZ];
+
+        for (int sx = 0; sx < spanX; sx++) {
+            for (int sz = 0; sz < spanZ; sz++) {
+                WorldChunk chunk = world.getChunkManager()
+                        .getWorldChunk(minSectionX + sx, minSectionZ + sz, false);
+                if (chunk == null) continue;
+
+                Heightmap heightmap = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE);
+                int[] tops = new int[16 * 16];
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        tops[x * 16 + z] = heightmap.get(x, z) - 1;
+                    }
+                }
+                surfaceTops[sx * spanZ + sz] = tops;
+                stamps[sx * spanZ + sz] = RegionCache.stamp(chunk);
+
+                ChunkSection[] sections = chunk.getSectionArray();
+                for (int sy = 0; sy < spanY; sy++) {
+                    int index = chunk.sectionCoordToIndex(minSectionY + sy);
+                    if (index < 0 || index >= sections.length) continue;
+
+                    ChunkSection section = sections[index];
+                    if (section == null || section.isEmpty()) continue;
+                    PalettedContainer<BlockState> container = section.getBlockStateContainer();
+                    containers[gridIndex(sx, sy, sz)] = copy ? container.copy() : container;
+                }
+            }
+        }
+    }
+
+    private WorldSnapshot(int minSectionX, int minSectionY, int minSectionZ, int spanX, int spanY, int spanZ,
+                          PalettedContainer<BlockState>[] containers, int[][] surfaceTops, int[] stamps) {
+        this.cacheStamp = SectionResultCache.get().stamp();
+        this.minSectionX = minSectionX;
+        this.minSectionY = minSectionY;
+        this.minSectionZ = minSectionZ;
+        this.spanX = spanX;
+        this.spanY = spanY;
+        this.spanZ = spanZ;
+        this.containers = containers;
+        this.surfaceTops = surfaceTops;
+        this.stamps = stamps;
+    }
+
+    /** Copies the chunk data of the box. Client thread only. */
+    static WorldSnapshot capture(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return new WorldSnapshot(world, minX, minY, minZ, maxX, maxY, maxZ, true);
+    }
+
+    /** Reads the live chunk data of the box; only valid while the client thread is inside the scan. */
+    static WorldSnapshot live(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return new WorldSnapshot(world, minX, minY, minZ, maxX, maxY, maxZ, false);
+    }
+
+    /**
+     * A snapshot over ready-made containers, indexed {@code (x * spanY + y) * spanZ + z} from the
+     * min section, with every chunk column loaded and stamped 0. Surface heights are taken from
+     * the containers. For benchmarks and tools that have no world.
+     */
+    static WorldSnapshot of(int minSectionX, int minSectionY, int minSectionZ, int spanX, int spanY, int spanZ,
+                            PalettedContainer<BlockState>[] containers) {
+        int[][] surfaceTops = new int[spanX * spanZ][];
+        for (int sx = 0; sx < spanX; sx++) {
+            for (int sz = 0; sz < spanZ; sz++) {
+                int[] tops = new int[16 * 16];
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        int top = (minSectionY << 4) - 1;
+                        for (int y = (spanY << 4) - 1; y >= 0; y--) {
+                            PalettedContainer<BlockState> container = containers[(sx * spanY + (y >> 4)) * spanZ + sz];
+                            if (container != null && !container.get(x, y & 15, z).isAir()) {
+                                top = (minSectionY << 4) + y;
+                                break;
+                            }
+                        }
+                        tops[x * 16 + z] = top;
+                    }
+                }
+                surfaceTops[sx * spanZ + sz] = tops;
+            }
+        }
+        return new WorldSnapshot(minSectionX, minSectionY, minSectionZ, spanX, spanY, spanZ, containers,
+                surfaceTops, new int[spanX * spanZ]);
+    }
+
+    /** Container of the section at section coordinates, or {@code null} if it is air or unknown. */
+    PalettedContainer<BlockState> container(int sx, int sy, int sz) {
+        int gx = sx - minSectionX, gy = sy - minSectionY, gz = sz - minSectionZ;
+        if (gx < 0 || gy < 0 || gz < 0 || gx >= spanX || gy >= spanY || gz >= spanZ) return null;
+        return containers[gridIndex(gx, gy, gz)];
+    }
+
+    /** Y of the topmost non-air block in the world column, or {@link #NO_HEIGHTMAP}. */
+    int surfaceTop(int x, int z) {
+        int[] tops = tops(x >> 4, z >> 4);
+        return tops == null ? NO_HEIGHTMAP : tops[(x & 15) * 16 + (z & 15)];
+    }
+
+    boolean isLoaded(int chunkX, int chunkZ) {
+        return tops(chunkX, chunkZ) != null;
+    }
+
+    /** {@link RegionCache#stamp} of a loaded chunk. */
+    int stamp(int chunkX, int chunkZ) {
+        return stamps[(chunkX - minSectionX) * spanZ + chunkZ - minSectionZ];
+    }
+
+    private int[] tops(int chunkX, int chunkZ) {
+        int gx = chunkX - minSectionX, gz = chunkZ - minSectionZ;
+        if (gx < 0 || gz < 0 || gx >= spanX || gz >= spanZ) return null;
+        return surfaceTops[gx * spanZ + gz];
+    }
+
+    private int gridIndex(int sx, int sy, int sz) {
+        return (sx * spanY + sy) * spanZ + sz;
+    }
+}
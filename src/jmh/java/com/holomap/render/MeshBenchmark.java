@@ -0,0 +1,61 @@
+package com.holomap.render;
+
+import com.holomap.map.VoxelVolume;
+import com.holomap.scan.SyntheticTerrain;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Meshing every section of a full scan on one thread, at the detail levels the sections would
+ * get around the player. {@code snapshotAndBuild} includes the render-thread snapshot copy, as a
+ * full remesh pays it; {@code build} is the worker side alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MeshBenchmark {
+    @Param({"FLAT", "MOUNTAINS", "CAVES", "FOREST"})
+    public SyntheticTerrain.Kind terrain;
+
+    @Param({"24", "48", "96"})
+    public int radius;
+
+    @Param({"PER_FACE", "GREEDY"})
+    public BlockMeshBuilder3D.MeshMode mode;
+
+    private VoxelVolume volume;
+    private BlockFaceCache.Appearance[] palette;
+    private List<SectionSnapshot> sections;
+
+    @Setup
+    public void setUp() throws InterruptedException, ExecutionException {
+        BlockMeshBuilder3D.setMode(mode);
+        volume = SyntheticTerrain.scan(terrain, radius);
+        palette = SyntheticMeshes.palette(volume);
+        sections = SyntheticMeshes.sections(volume, palette, SyntheticTerrain.ORIGIN);
+    }
+
+    @Benchmark
+    public void build(Blackhole blackhole) {
+        for (SectionSnapshot section : sections) {
+            blackhole.consume(BlockMeshBuilder3D.buildSection(section, () -> false));
+        }
+    }
+
+    @Benchmark
+    public void snapshotAndBuild(Blackhole blackhole) {
+        for (SectionSnapshot section : SyntheticMeshes.sections(volume, palette, SyntheticTerrain.ORIGIN)) {
+            blackhole.consume(BlockMeshBuilder3D.buildSection(section, () -> false));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.holomap.render;
+
+import com.holomap.map.VoxelVolume;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.LeavesBlock;
+import net.minecraft.block.MapColor;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.EmptyBlockView;
+
+/**
+ * Mesher inputs without a client: appearances that stand in for {@link BlockFaceCache} (one
+ * made-up atlas slot per palette entry, the real map colour and render pass), and the section
+ * snapshots {@link SectionedMesh#update} would hand to its workers.
+ */
+final class SyntheticMeshes {
+    private static final int ATLAS_SLOTS = 64; // sprites per atlas row and column
+
+    private SyntheticMeshes() {}
+
+    static BlockFaceCache.Appearance[] palette(VoxelVolume volume) {
+        var palette = new BlockFaceCache.Appearance[volume.paletteSize()];
+        Map<BlockFaceCache.Face, BlockFaceCache.Face> interned = new HashMap<>();
+        for (int i = 1; i < palette.length; i++) {
+            BlockState state = volume.paletteEntry(i);
+            if (state == null) continue;
+
+            float minU = (i % ATLAS_SLOTS) / (float) ATLAS_SLOTS, minV = (i / ATLAS_SLOTS) / (float) ATLAS_SLOTS;
+            var face = new BlockFaceCache.Face(null, minU, minU + 1f / ATLAS_SLOTS, minV, minV + 1f / ATLAS_SLOTS,
+                    BlockFaceCache.NO_TINT, true, layer(state));
+            face = interned.computeIfAbsent(face, f -> f);
+            var faces = new BlockFaceCache.Face[6];
+            Arrays.fill(faces, face);
+
+            MapColor mapColor = state.getMapColor(EmptyBlockView.INSTANCE, BlockPos.ORIGIN);
+            palette[i] = new BlockFaceCache.Appearance(faces,
+                    mapColor == MapColor.CLEAR ? BlockFaceCache.NO_MAP_COLOR : mapColor.color);
+        }
+        return palette;
+    }
+
+    /** Snapshots of every section of the volume, at the detail level the origin gives them. */
+    static List<SectionSnapshot> sections(VoxelVolume volume, BlockFaceCache.Appearance[] palette, BlockPos origin) {
+        var snapshots = new ArrayList<SectionSnapshot>();
+        for (int sx = volume.minX() >> 4; sx <= (volume.minX() + volume.sizeX() - 1) >> 4; sx++) {
+            for (int sy = volume.minY() >> 4; sy <= (volume.minY() + volume.sizeY() - 1) >> 4; sy++) {
+                for (int sz = volume.minZ() >> 4; sz <= (volume.minZ() + volume.sizeZ() - 1) >> 4; sz++) {
+                    int lodStep = SectionedMesh.lodStep(ChunkSectionPos.asLong(sx, sy, sz), origin);
+                    var snapshot = SectionSnapshot.capture(volume, palette, sx << 4, sy << 4, sz << 4, lodStep);
+                    if (!snapshot.isEmpty()) snapshots.add(snapshot);
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    /** Finished meshes of every section, built on the calling thread. */
+    static List<BlockMeshBuilder3D.BlockMesh> meshes(List<SectionSnapshot> sections) {
+        var meshes = new ArrayList<BlockMeshBuilder3D.BlockMesh>();
+        for (SectionSnapshot section : sections) {
+            var mesh = BlockMeshBuilder3D.buildSection(section, () -> false);
+            if (!mesh.isEmpty()) meshes.add(mesh);
+        }
+        return meshes;
+    }
+
+    private static BlockMeshBuilder3D.Layer layer(BlockState state) {
+        if (state.getBlock() instanceof LeavesBlock) return BlockMeshBuilder3D.Layer.CUTOUT;
+        if (!state.getFluidState().isEmpty()) return BlockMeshBuilder3D.Layer.TRANSLUCENT;
+        return BlockMeshBuilder3D.Layer.OPAQUE;
+    }
+}
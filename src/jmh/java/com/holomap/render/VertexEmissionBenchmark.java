@@ -0,0 +1,64 @@
+package com.holomap.render;
+
+import com.holomap.scan.SyntheticTerrain;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Vertex emission from finished meshes, the CPU side of what the minimap renderer does before
+ * handing vertices to the GPU. Opaque and cutout groups are uploaded as they are packed, so the
+ * only per-vertex work left is {@code resortTranslucent}: re-sorting the translucent quads of
+ * every section as one camera turn does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VertexEmissionBenchmark {
+    @Param({"FLAT", "FOREST"})
+    public SyntheticTerrain.Kind terrain;
+
+    @Param({"24", "48", "96"})
+    public int radius;
+
+    private List<BlockMeshBuilder3D.BlockMesh> meshes;
+    private ByteBuffer sorted;
+    private int turn = 0;
+
+    @Setup
+    public void setUp() throws InterruptedException, ExecutionException {
+        BlockMeshBuilder3D.setMode(BlockMeshBuilder3D.MeshMode.PER_FACE);
+        var volume = SyntheticTerrain.scan(terrain, radius);
+        meshes = SyntheticMeshes.meshes(SyntheticMeshes.sections(volume, SyntheticMeshes.palette(volume),
+                SyntheticTerrain.ORIGIN));
+        int largest = 0;
+        for (var mesh : meshes) {
+            largest = Math.max(largest, mesh.byteSize());
+        }
+        sorted = ByteBuffer.allocateDirect(largest);
+    }
+
+    @Benchmark
+    public void resortTranslucent(Blackhole blackhole) {
+        // Step the camera by one sort bucket per call, all faces facing it
+        double yaw = Math.toRadians(15 * turn++);
+        var toCamera = new Vector3f((float) Math.sin(yaw), 1f, (float) Math.cos(yaw)).normalize();
+        for (var mesh : meshes) {
+            if (!mesh.hasTranslucent()) continue;
+            sorted.clear();
+            blackhole.consume(mesh.sortTranslucent(sorted, 0x3F, toCamera.x, toCamera.y, toCamera.z));
+            blackhole.consume(sorted.flip());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.holomap.scan;
+
+import com.holomap.map.VoxelVolume;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Full scans over {@link SyntheticTerrain}: the tile pass of {@link BlockScanner3D#scan3DTerrain},
+ * without the client-thread capture and the disk cache. Cold scans start with empty section and
+ * probe caches, like the first scan after joining; warm scans are rescans of an unchanged area.
+ * FLOOD scans use neither cache, so for them cold and warm only differ by JIT state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ScanBenchmark {
+    @Param({"FLAT", "MOUNTAINS", "CAVES", "FOREST"})
+    public SyntheticTerrain.Kind terrain;
+
+    @Param({"24", "48", "96"})
+    public int radius;
+
+    @Param({"BAND", "FLOOD"})
+    public BlockScanner3D.ScanMode scanMode;
+
+    private WorldSnapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        BlockScanner3D.setMode(scanMode);
+        snapshot = SyntheticTerrain.snapshot(terrain, radius);
+        SectionResultCache.get().clear();
+        SurfaceResolver.clearCache();
+    }
+
+    @Benchmark
+    public VoxelVolume scanCold() throws InterruptedException, ExecutionException {
+        SectionResultCache.get().clear();
+        SurfaceResolver.clearCache();
+        return SyntheticTerrain.scan(snapshot, terrain, radius);
+    }
+
+    @Benchmark
+    public VoxelVolume scanWarm() throws InterruptedException, ExecutionException {
+        return SyntheticTerrain.scan(snapshot, terrain, radius);
+    }
+}
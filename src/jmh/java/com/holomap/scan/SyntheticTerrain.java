@@ -0,0 +1,141 @@
+package com.holomap.scan;
+
+import com.holomap.map.VoxelVolume;
+import java.util.concurrent.ExecutionException;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.PalettedContainer;
+
+/**
+ * Generated terrain held in the same containers a client chunk would use, so the scanner can
+ * run on it without a world. Every kind is centred on {@link #ORIGIN} and spans world Y 0-127.
+ */
+public final class SyntheticTerrain {
+    public static final BlockPos ORIGIN = new BlockPos(0, 64, 0);
+    public static final int VERTICAL_RANGE = 32;
+
+    private static final int SECTIONS_Y = 8;
+
+    static {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    public enum Kind {
+        /** Grass over dirt over stone at Y 63. */
+        FLAT,
+        /** Rolling hills up to about Y 100, snow-capped, many exposed side faces. */
+        MOUNTAINS,
+        /** Solid stone to Y 90 with winding tunnels; scanned as the cave layer. */
+        CAVES,
+        /** Flat grass with trees every few blocks and water ponds: cutout and translucent faces. */
+        FOREST;
+
+        boolean caveLayer() {
+            return this == CAVES;
+        }
+    }
+
+    private SyntheticTerrain() {}
+
+    /** A snapshot of the terrain covering everything a scan of {@code radius} around the origin reads. */
+    static WorldSnapshot snapshot(Kind kind, int radius) {
+        int minSection = (ORIGIN.getX() - radius >> 4) - 1;
+        int maxSection = (ORIGIN.getX() + radius >> 4) + 1;
+        int span = maxSection - minSection + 1;
+
+        @SuppressWarnings("unchecked")
+        PalettedContainer<BlockState>[] containers = new PalettedContainer[span * SECTIONS_Y * span];
+        for (int sx = 0; sx < span; sx++) {
+            for (int sy = 0; sy < SECTIONS_Y; sy++) {
+                for (int sz = 0; sz < span; sz++) {
+                    containers[(sx * SECTIONS_Y + sy) * span + sz] = section(kind,
+                            (minSection + sx) << 4, sy << 4, (minSection + sz) << 4);
+                }
+            }
+        }
+        return WorldSnapshot.of(minSection, 0, minSection, span, SECTIONS_Y, span, containers);
+    }
+
+    /** Runs a full scan of {@code radius} over a fresh snapshot, the way {@link BlockScanner3D} would. */
+    public static VoxelVolume scan(Kind kind, int radius) throws InterruptedException, ExecutionException {
+        return scan(snapshot(kind, radius), kind, radius);
+    }
+
+    static VoxelVolume scan(WorldSnapshot snapshot, Kind kind, int radius)
+            throws InterruptedException, ExecutionException {
+        int size = 2 * radius + 1;
+        int yStart = ORIGIN.getY() + 5;
+        int yEnd = ORIGIN.getY() - VERTICAL_RANGE + 5;
+        int probeStart = kind.caveLayer() ? SurfaceResolver.caveProbeStart(ORIGIN) : yStart;
+        return BlockScanner3D.scanSnapshot(snapshot, ORIGIN.getX() - radius, yEnd, ORIGIN.getZ() - radius, size,
+                yStart - yEnd + 1, probeStart, kind.caveLayer(), BlockScanner3D.mode(),
+                BlockScanner3D.scanDepth(VERTICAL_RANGE), () -> false);
+    }
+
+    /** Container for the section at the given world min corner, or {@code null} if it is all air. */
+    private static PalettedContainer<BlockState> section(Kind kind, int originX, int originY, int originZ) {
+        BlockState air = Blocks.AIR.getDefaultState();
+        var container = new PalettedContainer<>(Block.STATE_IDS, air, PalettedContainer.PaletteProvider.BLOCK_STATE);
+        boolean empty = true;
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    BlockState state = blockAt(kind, originX + x, originY + y, originZ + z);
+                    if (state == air) continue;
+                    container.swapUnsafe(x, y, z, state);
+                    empty = false;
+                }
+            }
+        }
+        return empty ? null : container;
+    }
+
+    private static BlockState blockAt(Kind kind, int x, int y, int z) {
+        return switch (kind) {
+            case FLAT -> layered(y, 63, Blocks.GRASS_BLOCK);
+            case MOUNTAINS -> {
+                int height = (int) (72 + 22 * Math.sin(x / 23.0) * Math.cos(z / 19.0) + 6 * Math.sin((x + z) / 7.0));
+                yield layered(y, height, height > 88 ? Blocks.SNOW_BLOCK : Blocks.GRASS_BLOCK);
+            }
+            case CAVES -> {
+                if (y > 90) yield Blocks.AIR.getDefaultState();
+                double tunnel = Math.sin(x * 0.15) + Math.cos(z * 0.13) + Math.sin(y * 0.21 + x * 0.05);
+                boolean open = (y >= 60 && y <= 66 && Math.abs(x % 24) < 3) || (y >= 48 && y <= 78 && tunnel > 1.6);
+                yield open ? Blocks.AIR.getDefaultState() : layered(y, 90, Blocks.STONE);
+            }
+            case FOREST -> forest(x, y, z);
+        };
+    }
+
+    private static BlockState forest(int x, int y, int z) {
+        boolean pond = Math.sin(x / 11.0) * Math.cos(z / 13.0) > 0.6;
+        if (pond) {
+            if (y == 62 || y == 63) return Blocks.WATER.getDefaultState();
+            return y < 62 ? layered(y, 61, Blocks.SAND) : Blocks.AIR.getDefaultState();
+        }
+
+        // A tree on every 7x7 cell whose hash picks it: trunk to Y 68, leaf blob around its top
+        int cellX = Math.floorDiv(x, 7), cellZ = Math.floorDiv(z, 7);
+        int hash = cellX * 73_856_093 ^ cellZ * 19_349_663;
+        if ((hash & 3) != 0) {
+            int trunkX = cellX * 7 + 3, trunkZ = cellZ * 7 + 3;
+            int dx = x - trunkX, dy = y - 68, dz = z - trunkZ;
+            if (dx == 0 && dz == 0 && y >= 64 && y <= 68) return Blocks.OAK_LOG.getDefaultState();
+            if (y >= 66 && dx * dx + dy * dy + dz * dz <= 6) return Blocks.OAK_LEAVES.getDefaultState();
+        }
+        return layered(y, 63, Blocks.GRASS_BLOCK);
+    }
+
+    /** {@code top} block at {@code height}, three dirt below it, stone further down, air above. */
+    private static BlockState layered(int y, int height, Block top) {
+        if (y > height) return Blocks.AIR.getDefaultState();
+        if (y == height) return top.getDefaultState();
+        if (y >= height - 3 && top != Blocks.STONE) return Blocks.DIRT.getDefaultState();
+        return Blocks.STONE.getDefaultState();
+    }
+}
@@ -1,5 +1,6 @@
 package com.holomap;
 
+import com.holomap.network.HoloMapNetworking;
 import net.fabricmc.api.ModInitializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,5 +12,6 @@ public class HoloMapMod implements ModInitializer {
 	@Override
 	public void onInitialize() {
 		LOGGER.info("[HoloMap] Initializing common module");
+		HoloMapNetworking.register();
 	}
 }
\ No newline at end of file
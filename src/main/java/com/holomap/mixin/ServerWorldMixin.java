@@ -0,0 +1,19 @@
+package com.holomap.mixin;
+
+import com.holomap.network.ServerScanService;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ServerWorld.class)
+public class ServerWorldMixin {
+	@Inject(at = @At("HEAD"), method = "onBlockChanged")
+	private void holomap$onBlockChanged(BlockPos pos, BlockState oldBlock, BlockState newBlock, CallbackInfo info) {
+		// Every server-side block state change ends up here; subscribed map clients get the columns
+		ServerScanService.get().onBlockChanged((ServerWorld) (Object) this, pos);
+	}
+}
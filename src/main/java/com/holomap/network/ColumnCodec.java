@@ -0,0 +1,253 @@
+package com.holomap.network;
+
+import com.holomap.scan.FaceVisibility;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+/**
+ * Wire format of the surface summaries the server scan service sends: some columns of one chunk,
+ * from the top block down to {@link #DEPTH} blocks below the first solid one, with the face mask
+ * the client scanner would give each cell.
+ *
+ * Layout, all numbers varints: palette size and the raw block state ids of the palette; column
+ * count; then per column its chunk-local index {@code x * 16 + z}, the Y of its top cell
+ * (zigzag), its cell count, and the cells top-down as runs of {@code paletteIndex << 6 | faceMask}
+ * values, each followed by its run length. Palette index 0 is "no cell": air deeper than
+ * {@link #AIR_DEPTH} below the surface is left out, like the client scanner does.
+ */
+public final class ColumnCodec {
+    private static final int DEPTH = 16;
+    private static final int AIR_DEPTH = 3;
+    private static final int MAX_CELLS = 64; // per column, bounds payloads over deep water
+    private static final Direction[] DIRECTIONS = {Direction.DOWN, Direction.UP, Direction.NORTH,
+            Direction.SOUTH, Direction.WEST, Direction.EAST};
+
+    /** One decoded column; {@code states[i]} and {@code faceMasks[i]} are at {@code topY - i}, null for no cell. */
+    public record Column(int localX, int localZ, int topY, BlockState[] states, byte[] faceMasks) {}
+
+    private ColumnCodec() {}
+
+    /**
+     * The blocks {@link #encode(BlockSource, int, int, BitSet)} reads, in world coordinates: the
+     * chunk being encoded and the border of its four neighbours.
+     */
+    public interface BlockSource {
+        int bottomY();
+
+        /** Y of the topmost non-air block of the column, or {@code bottomY() - 1} if it has none. */
+        int topY(int x, int z);
+
+        /** The state at the position; air outside the world or in chunks that are not loaded. */
+        BlockState state(int x, int y, int z);
+    }
+
+    /**
+     * Encodes the columns of a loaded chunk whose bits are set in {@code columns}. Neighbouring
+     * chunks the server has not loaded count as air. Server thread only.
+     */
+    public static byte[] encode(World world, WorldChunk chunk, BitSet columns) {
+        return encode(new ChunkBlocks(world, chunk), chunk.getPos().x, chunk.getPos().z, columns);
+    }
+
+    /** Encodes the columns of chunk (chunkX, chunkZ) whose bits ({@code x * 16 + z}) are set in {@code columns}. */
+    public static byte[] encode(BlockSource blocks, int chunkX, int chunkZ, BitSet columns) {
+        var palette = new Reference2IntOpenHashMap<BlockState>();
+        var paletteIds = new ArrayList<Integer>();
+        var body = new ByteArrayOutputStream();
+        int startX = chunkX << 4, startZ = chunkZ << 4;
+
+        writeVarInt(body, columns.cardinality());
+        for (int index = columns.nextSetBit(0); index >= 0 && index < 256; index = columns.nextSetBit(index + 1)) {
+            int x = startX + (index >> 4), z = startZ + (index & 15);
+            int top = blocks.topY(x, z);
+            int surface = top;
+            while (surface >= blocks.bottomY()) {
+                BlockState state = blocks.state(x, surface, z);
+                if (!state.isAir() && state.getFluidState().isEmpty()) break;
+                surface--;
+            }
+            int bottom = Math.max(blocks.bottomY(), Math.max(surface - DEPTH + 1, top - MAX_CELLS + 1));
+            int count = Math.max(0, top - bottom + 1);
+
+            writeVarInt(body, index);
+            writeVarInt(body, zigzag(top));
+            writeVarInt(body, count);
+            int runValue = -1, runLength = 0;
+            for (int y = top; y > top - count; y--) {
+                BlockState state = blocks.state(x, y, z);
+                int value = 0;
+                if (!state.isAir() || y >= surface - AIR_DEPTH) {
+                    int paletteIndex = palette.computeIfAbsent(state, s -> {
+                        paletteIds.add(Block.getRawIdFromState(state));
+                        return paletteIds.size(); // 0 is no cell
+                    });
+                    value = paletteIndex << 6 | faceMask(blocks, state, x, y, z);
+                }
+                if (value == runValue) {
+                    runLength++;
+                    continue;
+                }
+                if (runLength > 0) {
+                    writeVarInt(body, runValue);
+                    writeVarInt(body, runLength);
+                }
+                runValue = value;
+                runLength = 1;
+            }
+            if (runLength > 0) {
+                writeVarInt(body, runValue);
+                writeVarInt(body, runLength);
+            }
+        }
+
+        var out = new ByteArrayOutputStream(body.size() + paletteIds.size() * 2 + 2);
+        writeVarInt(out, paletteIds.size());
+        for (int id : paletteIds) {
+            writeVarInt(out, id);
+        }
+        out.writeBytes(body.toByteArray());
+        return out.toByteArray();
+    }
+
+    /** Decodes a summary; throws {@link IllegalArgumentException} if it is malformed. */
+    public static List<Column> decode(byte[] data) {
+        var in = new Reader(data);
+        int paletteSize = in.varInt(Block.STATE_IDS.size());
+        var palette = new BlockState[paletteSize + 1];
+        for (int i = 1; i <= paletteSize; i++) {
+            palette[i] = Block.getStateFromRawId(in.varInt(Integer.MAX_VALUE));
+        }
+
+        int columnCount = in.varInt(256);
+        var columns = new ArrayList<Column>(columnCount);
+        for (int c = 0; c < columnCount; c++) {
+            int index = in.varInt(255);
+            int top = unzigzag(in.varInt(-1));
+            int count = in.varInt(MAX_CELLS);
+            var states = new BlockState[count];
+            var faceMasks = new byte[count];
+            for (int i = 0; i < count; ) {
+                int value = in.varInt(Integer.MAX_VALUE);
+                int length = in.varInt(count - i);
+                if (length == 0 || (value >>> 6) > paletteSize) throw new IllegalArgumentException("Bad run");
+                for (int end = i + length; i < end; i++) {
+                    states[i] = palette[value >>> 6];
+                    faceMasks[i] = (byte) (value & 0x3F);
+                }
+            }
+            columns.add(new Column(index >> 4, index & 15, top, states, faceMasks));
+        }
+        return columns;
+    }
+
+    /**
+     * The face mask the client scanner would give the cell: {@link FaceVisibility} towards each
+     * neighbour, for air cells too.
+     */
+    static int faceMask(BlockSource blocks, BlockState state, int x, int y, int z) {
+        int mask = 0;
+        for (int i = 0; i < 6; i++) {
+            Direction direction = DIRECTIONS[i];
+            BlockState neighbor = blocks.state(x + direction.getOffsetX(), y + direction.getOffsetY(),
+                    z + direction.getOffsetZ());
+            if (FaceVisibility.isVisible(state, neighbor, direction)) mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * A chunk and its four neighbours, read straight from their sections. The neighbours are
+     * looked up once, without loading anything.
+     */
+    private static final class ChunkBlocks implements BlockSource {
+        private static final BlockState AIR = Blocks.AIR.getDefaultState();
+
+        private final World world;
+        private final WorldChunk[] chunks = new WorldChunk[9]; // (dx + 1) * 3 + dz + 1
+        private final int chunkX, chunkZ;
+        private final Heightmap heightmap;
+
+        ChunkBlocks(World world, WorldChunk chunk) {
+            this.world = world;
+            this.chunkX = chunk.getPos().x;
+            this.chunkZ = chunk.getPos().z;
+            this.heightmap = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE);
+            chunks[4] = chunk;
+            chunks[1] = world.getChunkManager().getWorldChunk(chunkX - 1, chunkZ, false);
+            chunks[7] = world.getChunkManager().getWorldChunk(chunkX + 1, chunkZ, false);
+            chunks[3] = world.getChunkManager().getWorldChunk(chunkX, chunkZ - 1, false);
+            chunks[5] = world.getChunkManager().getWorldChunk(chunkX, chunkZ + 1, false);
+        }
+
+        @Override
+        public int bottomY() {
+            return world.getBottomY();
+        }
+
+        @Override
+        public int topY(int x, int z) {
+            return heightmap.get(x & 15, z & 15) - 1;
+        }
+
+        @Override
+        public BlockState state(int x, int y, int z) {
+            int dx = (x >> 4) - chunkX, dz = (z >> 4) - chunkZ;
+            if (dx < -1 || dx > 1 || dz < -1 || dz > 1 || world.isOutOfHeightLimit(y)) return AIR;
+            WorldChunk chunk = chunks[(dx + 1) * 3 + dz + 1];
+            if (chunk == null) return AIR;
+            ChunkSection section = chunk.getSectionArray()[chunk.getSectionIndex(y)];
+            return section == null || section.isEmpty() ? AIR : section.getBlockState(x & 15, y & 15, z & 15);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position = 0;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        /** Reads a varint no larger than {@code max} (unsigned, so -1 allows any value). */
+        int varInt(int max) {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (position >= data.length) throw new IllegalArgumentException("Truncated summary");
+                byte b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (Integer.compareUnsigned(value, max) > 0) throw new IllegalArgumentException("Value out of range");
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("VarInt too long");
+        }
+    }
+}
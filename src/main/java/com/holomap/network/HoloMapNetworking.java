@@ -1,13 +1,26 @@
 package com.holomap.network;
 
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+
 /**
- * Placeholder for future networking (e.g., server-driven scan requests or sending expanded data).
- *
- * For Fabric 0.116.4 you can register payloads using the v1 networking API:
- * - ClientPlayNetworking
- * - ServerPlayNetworking
- * - PayloadTypeRegistry
+ * Payloads of server-assisted scanning and the server side of it, see {@link ServerScanService}.
+ * A client only sends {@link ScanRequestPayload}s when the server has registered them, so
+ * either side works without the mod on the other.
  */
 public final class HoloMapNetworking {
     private HoloMapNetworking() {}
-}
\ No newline at end of file
+
+    public static void register() {
+        PayloadTypeRegistry.playC2S().register(ScanRequestPayload.ID, ScanRequestPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(SurfaceChunkPayload.ID, SurfaceChunkPayload.CODEC);
+
+        ServerPlayNetworking.registerGlobalReceiver(ScanRequestPayload.ID, (payload, context) ->
+                ServerScanService.get().request(context.player(), payload.radius(), payload.skipRadius()));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) ->
+                ServerScanService.get().remove(handler.player));
+        ServerTickEvents.END_SERVER_TICK.register(server -> ServerScanService.get().tick(server));
+    }
+}
@@ -0,0 +1,35 @@
+package com.holomap.network;
+
+import com.holomap.HoloMapMod;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+/**
+ * Client to server: send surface summaries of the chunks within {@code radius} chunks of the
+ * player, except those within {@code skipRadius}, which the client has loaded and scans itself.
+ */
+public record ScanRequestPayload(int radius, int skipRadius) implements CustomPayload {
+    /** Largest radius the server answers, in chunks. */
+    public static final int MAX_RADIUS = 32;
+
+    public static final CustomPayload.Id<ScanRequestPayload> ID =
+            new CustomPayload.Id<>(Identifier.of(HoloMapMod.MOD_ID, "scan_request"));
+    public static final PacketCodec<PacketByteBuf, ScanRequestPayload> CODEC =
+            CustomPayload.codecOf(ScanRequestPayload::write, ScanRequestPayload::new);
+
+    private ScanRequestPayload(PacketByteBuf buf) {
+        this(buf.readVarInt(), buf.readVarInt());
+    }
+
+    private void write(PacketByteBuf buf) {
+        buf.writeVarInt(radius);
+        buf.writeVarInt(skipRadius);
+    }
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -0,0 +1,232 @@
+package com.holomap.network;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+
+/**
+ * Server side of server-assisted scanning: answers {@link ScanRequestPayload}s with
+ * {@link SurfaceChunkPayload}s for the chunks around the player, and keeps pushing the changed
+ * columns of those chunks while the player stays subscribed.
+ *
+ * Requests are rate limited per player: one is started at most every
+ * {@link #REQUEST_INTERVAL_TICKS}, a newer one arriving in between replaces the waiting one, and
+ * each player is sent at most {@link #CHUNKS_PER_TICK} chunks per tick, nearest first. All
+ * players share one {@link #TICK_BUDGET_NANOS} of encoding per tick, handed out a chunk per
+ * player at a time, so many subscribers cannot lag the server. Only chunks the server has
+ * loaded are summarized; nothing is loaded or generated for the map.
+ *
+ * Block changes are collected per chunk column during the tick and sent once at its end, to
+ * every subscriber whose area covers the chunk but whose client has not loaded it. Server thread
+ * only.
+ */
+public final class ServerScanService {
+    private static final ServerScanService INSTANCE = new ServerScanService();
+
+    private static final int REQUEST_INTERVAL_TICKS = 20;
+    private static final int CHUNKS_PER_TICK = 16;
+    private static final long TICK_BUDGET_NANOS = 2_000_000;
+
+    private final Map<UUID, Subscriber> subscribers = new HashMap<>();
+    // Changed columns (bit x * 16 + z) per ChunkPos-packed chunk, per world
+    private final Map<RegistryKey<World>, Long2ObjectOpenHashMap<BitSet>> changed = new HashMap<>();
+    private final BitSet allColumns = new BitSet(256);
+
+    private long sent, deltas, throttled, overBudget;
+
+    private ServerScanService() {
+        allColumns.set(0, 256);
+    }
+
+    public static ServerScanService get() {
+        return INSTANCE;
+    }
+
+    /** Records a request; it starts on the next tick its player's rate limit allows. */
+    public void request(ServerPlayerEntity player, int radius, int skipRadius) {
+        Subscriber subscriber = subscribers.computeIfAbsent(player.getUuid(), uuid -> new Subscriber(player));
+        subscriber.player = player;
+        if (subscriber.hasPendingRequest) throttled++;
+        subscriber.pendingRadius = Math.max(0, Math.min(ScanRequestPayload.MAX_RADIUS, radius));
+        subscriber.pendingSkipRadius = Math.max(-1, Math.min(subscriber.pendingRadius, skipRadius));
+        subscriber.hasPendingRequest = true;
+    }
+
+    public void remove(ServerPlayerEntity player) {
+        subscribers.remove(player.getUuid());
+    }
+
+    /** Called for every block state change of a server world. */
+    public void onBlockChanged(ServerWorld world, BlockPos pos) {
+        if (subscribers.isEmpty()) return;
+
+        var chunks = changed.computeIfAbsent(world.getRegistryKey(), key -> new Long2ObjectOpenHashMap<>());
+        int x = pos.getX(), z = pos.getZ();
+        // The column itself, and its neighbours whose side faces it may have hidden or exposed
+        markColumn(chunks, x, z);
+        markColumn(chunks, x - 1, z);
+        markColumn(chunks, x + 1, z);
+        markColumn(chunks, x, z - 1);
+        markColumn(chunks, x, z + 1);
+    }
+
+    public void tick(MinecraftServer server) {
+        int now = server.getTicks();
+        var sending = new ArrayList<Subscriber>(subscribers.size());
+        for (var entry : subscribers.entrySet()) {
+            // Respawning and changing dimension replace the player entity
+            ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.getKey());
+            if (player == null) continue;
+            Subscriber subscriber = entry.getValue();
+            subscriber.player = player;
+
+            if (subscriber.hasPendingRequest && now - subscriber.lastRequestTick >= REQUEST_INTERVAL_TICKS) {
+                subscriber.start(now);
+            }
+            if (subscriber.world != player.getServerWorld().getRegistryKey()) {
+                subscriber.queue.clear(); // changed dimension; wait for the client to ask again
+                continue;
+            }
+            if (subscriber.next < subscriber.queue.size()) sending.add(subscriber);
+        }
+        pushChanges(server);
+        sendQueued(sending, System.nanoTime() + TICK_BUDGET_NANOS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d subscribers, %d chunks sent, %d deltas, %d requests throttled, %d ticks over budget",
+                subscribers.size(), sent, deltas, throttled, overBudget);
+    }
+
+    /** Sends queued chunks round-robin, one per subscriber per round, until the deadline passes. */
+    private void sendQueued(List<Subscriber> sending, long deadline) {
+        for (int round = 0; round < CHUNKS_PER_TICK && !sending.isEmpty(); round++) {
+            for (Iterator<Subscriber> it = sending.iterator(); it.hasNext(); ) {
+                if (System.nanoTime() >= deadline) {
+                    overBudget++;
+                    return;
+                }
+                Subscriber subscriber = it.next();
+                if (!sendNext(subscriber, subscriber.player.getServerWorld())) it.remove();
+            }
+        }
+    }
+
+    /** Sends the subscriber's next loaded queued chunk; returns {@code false} once its queue is done. */
+    private boolean sendNext(Subscriber subscriber, ServerWorld world) {
+        while (subscriber.next < subscriber.queue.size()) {
+            long chunkPos = subscriber.queue.getLong(subscriber.next++);
+            int chunkX = ChunkPos.getPackedX(chunkPos), chunkZ = ChunkPos.getPackedZ(chunkPos);
+            WorldChunk chunk = world.getChunkManager().getWorldChunk(chunkX, chunkZ, false);
+            if (chunk == null) continue;
+
+            ServerPlayNetworking.send(subscriber.player, new SurfaceChunkPayload(world.getRegistryKey(), chunkX, chunkZ,
+                    false, ColumnCodec.encode(world, chunk, allColumns)));
+            sent++;
+            break;
+        }
+        if (subscriber.next < subscriber.queue.size()) return true;
+        subscriber.queue.clear();
+        subscriber.next = 0;
+        return false;
+    }
+
+    private void pushChanges(MinecraftServer server) {
+        if (changed.isEmpty()) return;
+        for (ServerWorld world : server.getWorlds()) {
+            var chunks = changed.get(world.getRegistryKey());
+            if (chunks == null) continue;
+
+            for (var entry : chunks.long2ObjectEntrySet()) {
+                int chunkX = ChunkPos.getPackedX(entry.getLongKey()), chunkZ = ChunkPos.getPackedZ(entry.getLongKey());
+                WorldChunk chunk = world.getChunkManager().getWorldChunk(chunkX, chunkZ, false);
+                if (chunk == null) continue;
+
+                SurfaceChunkPayload payload = null;
+                for (Subscriber subscriber : subscribers.values()) {
+                    if (!subscriber.wantsDelta(world, chunkX, chunkZ)) continue;
+                    if (payload == null) {
+                        payload = new SurfaceChunkPayload(world.getRegistryKey(), chunkX, chunkZ, true,
+                                ColumnCodec.encode(world, chunk, entry.getValue()));
+                    }
+                    ServerPlayNetworking.send(subscriber.player, payload);
+                    deltas++;
+                }
+            }
+        }
+        changed.clear();
+    }
+
+    private static void markColumn(Long2ObjectOpenHashMap<BitSet> chunks, int x, int z) {
+        long key = ChunkPos.toLong(x >> 4, z >> 4);
+        BitSet columns = chunks.get(key);
+        if (columns == null) {
+            columns = new BitSet(256);
+            chunks.put(key, columns);
+        }
+        columns.set((x & 15) * 16 + (z & 15));
+    }
+
+    private static final class Subscriber {
+        ServerPlayerEntity player;
+        boolean hasPendingRequest = false;
+        int pendingRadius, pendingSkipRadius;
+        int lastRequestTick = Integer.MIN_VALUE / 2;
+
+        // The area of the last started request
+        RegistryKey<World> world = null;
+        int centerX, centerZ, radius, skipRadius;
+        final LongArrayList queue = new LongArrayList();
+        int next = 0;
+
+        Subscriber(ServerPlayerEntity player) {
+            this.player = player;
+        }
+
+        /** Replaces the queue with the chunks of the pending request, nearest ring first. */
+        void start(int now) {
+            hasPendingRequest = false;
+            lastRequestTick = now;
+            world = player.getServerWorld().getRegistryKey();
+            centerX = player.getBlockX() >> 4;
+            centerZ = player.getBlockZ() >> 4;
+            radius = pendingRadius;
+            skipRadius = pendingSkipRadius;
+
+            queue.clear();
+            next = 0;
+            for (int ring = skipRadius + 1; ring <= radius; ring++) {
+                for (int dx = -ring; dx <= ring; dx++) {
+                    for (int dz = -ring; dz <= ring; dz++) {
+                        if (Math.max(Math.abs(dx), Math.abs(dz)) != ring) continue;
+                        queue.add(ChunkPos.toLong(centerX + dx, centerZ + dz));
+                    }
+                }
+            }
+        }
+
+        /** Whether the chunk is in the requested area but outside what the client has loaded now. */
+        boolean wantsDelta(ServerWorld world, int chunkX, int chunkZ) {
+            if (this.world != world.getRegistryKey()) return false;
+            if (Math.max(Math.abs(chunkX - centerX), Math.abs(chunkZ - centerZ)) > radius) return false;
+            int playerX = player.getBlockX() >> 4, playerZ = player.getBlockZ() >> 4;
+            return Math.max(Math.abs(chunkX - playerX), Math.abs(chunkZ - playerZ)) > skipRadius;
+        }
+    }
+}
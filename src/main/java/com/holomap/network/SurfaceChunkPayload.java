@@ -0,0 +1,42 @@
+package com.holomap.network;
+
+import com.holomap.HoloMapMod;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.World;
+
+/**
+ * Server to client: {@link ColumnCodec} columns of one chunk of {@code world}, either all of them
+ * in answer to a {@link ScanRequestPayload} or, for a {@code delta}, only those whose blocks
+ * changed.
+ */
+public record SurfaceChunkPayload(RegistryKey<World> world, int chunkX, int chunkZ, boolean delta, byte[] data)
+        implements CustomPayload {
+    public static final CustomPayload.Id<SurfaceChunkPayload> ID =
+            new CustomPayload.Id<>(Identifier.of(HoloMapMod.MOD_ID, "surface_chunk"));
+    public static final PacketCodec<PacketByteBuf, SurfaceChunkPayload> CODEC =
+            CustomPayload.codecOf(SurfaceChunkPayload::write, SurfaceChunkPayload::new);
+    private static final int MAX_DATA_BYTES = 1 << 20;
+
+    private SurfaceChunkPayload(PacketByteBuf buf) {
+        this(buf.readRegistryKey(RegistryKeys.WORLD), buf.readVarInt(), buf.readVarInt(), buf.readBoolean(),
+                buf.readByteArray(MAX_DATA_BYTES));
+    }
+
+    private void write(PacketByteBuf buf) {
+        buf.writeRegistryKey(world);
+        buf.writeVarInt(chunkX);
+        buf.writeVarInt(chunkZ);
+        buf.writeBoolean(delta);
+        buf.writeByteArray(data);
+    }
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
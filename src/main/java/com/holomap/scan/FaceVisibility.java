@@ -0,0 +1,22 @@
+package com.holomap.scan;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.LeavesBlock;
+import net.minecraft.util.math.Direction;
+
+/** The face culling rule shared by the client scanner and the server scan service. */
+public final class FaceVisibility {
+    private FaceVisibility() {}
+
+    /**
+     * Whether the face of {@code state} towards {@code neighbor} can be seen. Opaque neighbours
+     * hide it, and so do the game's side-invisibility rules (water next to water, glass next to
+     * the same glass); leaves hide each other's faces like they do with fast graphics.
+     */
+    public static boolean isVisible(BlockState state, BlockState neighbor, Direction direction) {
+        if (neighbor.isAir()) return true;
+        if (neighbor.isOpaque()) return false;
+        if (state.getBlock() instanceof LeavesBlock && neighbor.getBlock() instanceof LeavesBlock) return false;
+        return !state.isSideInvisible(neighbor, direction);
+    }
+}
@@ -0,0 +1,144 @@
+package com.holomap.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ColumnCodecTest {
+    private static final int CHUNK_X = 2, CHUNK_Z = -1;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    void roundTripKeepsStatesAndFaceMasks() {
+        var terrain = new Terrain();
+        var all = new BitSet(256);
+        all.set(0, 256);
+
+        List<ColumnCodec.Column> columns = ColumnCodec.decode(ColumnCodec.encode(terrain, CHUNK_X, CHUNK_Z, all));
+
+        assertEquals(256, columns.size());
+        for (ColumnCodec.Column column : columns) {
+            int x = (CHUNK_X << 4) + column.localX(), z = (CHUNK_Z << 4) + column.localZ();
+            assertEquals(terrain.topY(x, z), column.topY(), "top of " + x + ", " + z);
+            assertTrue(column.states().length > 0);
+            for (int i = 0; i < column.states().length; i++) {
+                int y = column.topY() - i;
+                BlockState expected = terrain.state(x, y, z);
+                BlockState state = column.states()[i];
+                if (state == null) {
+                    assertTrue(expected.isAir(), "only air may be left out at " + x + ", " + y + ", " + z);
+                    continue;
+                }
+                assertSame(expected, state, "state at " + x + ", " + y + ", " + z);
+                assertEquals(ColumnCodec.faceMask(terrain, expected, x, y, z), (int) column.faceMasks()[i],
+                        "faces at " + x + ", " + y + ", " + z);
+            }
+        }
+    }
+
+    @Test
+    void encodesOnlyTheRequestedColumns() {
+        var columns = new BitSet(256);
+        columns.set(0);
+        columns.set(5 * 16 + 9);
+        columns.set(255);
+
+        List<ColumnCodec.Column> decoded = ColumnCodec.decode(ColumnCodec.encode(new Terrain(), CHUNK_X, CHUNK_Z, columns));
+
+        assertEquals(3, decoded.size());
+        assertEquals(0, decoded.get(0).localX());
+        assertEquals(0, decoded.get(0).localZ());
+        assertEquals(5, decoded.get(1).localX());
+        assertEquals(9, decoded.get(1).localZ());
+        assertEquals(15, decoded.get(2).localX());
+        assertEquals(15, decoded.get(2).localZ());
+    }
+
+    @Test
+    void keepsTheWaterOverTheFirstSolidBlock() {
+        var column = new BitSet(256);
+        column.set(5 * 16 + 5); // inside the pond
+        var terrain = new Terrain();
+        int x = (CHUNK_X << 4) + 5, z = (CHUNK_Z << 4) + 5;
+
+        ColumnCodec.Column decoded = ColumnCodec.decode(ColumnCodec.encode(terrain, CHUNK_X, CHUNK_Z, column)).get(0);
+
+        assertEquals(terrain.topY(x, z), decoded.topY());
+        assertSame(Blocks.WATER.getDefaultState(), decoded.states()[0]);
+        assertSame(Blocks.WATER.getDefaultState(), decoded.states()[1]);
+        assertSame(Blocks.SAND.getDefaultState(), decoded.states()[2]);
+        assertTrue((decoded.faceMasks()[0] & 2) != 0, "the water surface faces the sky");
+        assertEquals(0, decoded.faceMasks()[1] & 2, "water under water hides its top");
+    }
+
+    @Test
+    void airCellsKeepTheFacesTheScannerGivesThem() {
+        var terrain = new Terrain();
+        int x = CHUNK_X << 4, z = CHUNK_Z << 4;
+        int y = terrain.topY(x, z) + 1; // the air just above the grass
+
+        int mask = ColumnCodec.faceMask(terrain, Blocks.AIR.getDefaultState(), x, y, z);
+
+        assertEquals(0, mask & 1, "the grass below hides the bottom");
+        assertTrue((mask & 2) != 0, "the top faces more air");
+    }
+
+    @Test
+    void rejectsTruncatedData() {
+        var all = new BitSet(256);
+        all.set(0, 256);
+        byte[] data = ColumnCodec.encode(new Terrain(), CHUNK_X, CHUNK_Z, all);
+
+        assertThrows(IllegalArgumentException.class, () -> ColumnCodec.decode(Arrays.copyOf(data, data.length / 2)));
+    }
+
+    /** Grass over three dirt over stone with a rolling surface, and a water pond on sand in every chunk. */
+    private static final class Terrain implements ColumnCodec.BlockSource {
+        @Override
+        public int bottomY() {
+            return 0;
+        }
+
+        @Override
+        public int topY(int x, int z) {
+            return isPond(x, z) ? 63 : height(x, z);
+        }
+
+        @Override
+        public BlockState state(int x, int y, int z) {
+            if (y < 0) return Blocks.AIR.getDefaultState();
+            if (isPond(x, z)) {
+                if (y == 62 || y == 63) return Blocks.WATER.getDefaultState();
+                return y < 62 ? Blocks.SAND.getDefaultState() : Blocks.AIR.getDefaultState();
+            }
+            int height = height(x, z);
+            if (y > height) return Blocks.AIR.getDefaultState();
+            if (y == height) return Blocks.GRASS_BLOCK.getDefaultState();
+            return y >= height - 3 ? Blocks.DIRT.getDefaultState() : Blocks.STONE.getDefaultState();
+        }
+
+        private static int height(int x, int z) {
+            return 60 + ((x * 7 + z * 3) & 7);
+        }
+
+        private static boolean isPond(int x, int z) {
+            return (x & 15) >= 4 && (x & 15) < 8 && (z & 15) >= 4 && (z & 15) < 8;
+        }
+    }
+}